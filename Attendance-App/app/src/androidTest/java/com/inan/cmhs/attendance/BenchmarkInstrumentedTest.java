@@ -0,0 +1,299 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks on a scratch database, timings go to logcat under the Benchmark tag. Targets the features were asked to
+ * meet are asserted, the rest only log. Left out of connectedAndroidTest unless it is run with -Pbenchmarks.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkInstrumentedTest {
+    private static final String TAG = "Benchmark";
+    private static final String DB_NAME = "benchmark.db";
+    private static final long MARCH_1 = EpochDays.of(2023, 3, 1);
+    private Context context;
+    private DBHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DBHelper(context, DB_NAME);
+        //ids start again in every scratch database
+        RangeIndex.invalidateAll();
+        RosterCache.invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    private ArrayList<StudentItems> roster(long cid, int size) {
+        ArrayList<StudentItems> studentItems = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            long sid = dbHelper.addStudent(cid, i, "Student " + i);
+            StudentItems item = new StudentItems(sid, String.valueOf(i), "Student " + i);
+            item.setStatus(i % 3 == 0 ? "A" : "P");
+            studentItems.add(item);
+        }
+        return studentItems;
+    }
+
+    //a class of size students with every weekday of March 2023 marked
+    private long markedClass(int size) {
+        long cid = dbHelper.addClass("Class " + size, "A");
+        ArrayList<StudentItems> studentItems = new ArrayList<>(size);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 1; i <= size; i++) {
+                long sid = dbHelper.addStudent(cid, i, "Student " + i);
+                studentItems.add(new StudentItems(sid, String.valueOf(i), "Student " + i));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        for (long day = MARCH_1; day < EpochDays.of(2023, 4, 1); day++) {
+            //1970-01-01 was a Thursday, so day % 7 == 2 is a Saturday and 3 a Sunday
+            if (day % 7 == 2 || day % 7 == 3) continue;
+            for (int i = 0; i < size; i++) studentItems.get(i).setStatus((i + day) % 5 == 0 ? "A" : "P");
+            dbHelper.saveDayStatuses(cid, day, studentItems);
+        }
+        return cid;
+    }
+
+    @Test
+    public void saveDayStatuses_benchmark() {
+        for (int size : new int[]{50, 200, 1000}) {
+            long cid = dbHelper.addClass("Class " + size, "A");
+            ArrayList<StudentItems> studentItems = roster(cid, size);
+            //warm up the statement cache on the first day, time the second
+            dbHelper.saveDayStatuses(cid, MARCH_1, studentItems);
+            long start = SystemClock.elapsedRealtimeNanos();
+            int saved = dbHelper.saveDayStatuses(cid, MARCH_1 + 1, studentItems);
+            long micros = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+            Log.i(TAG, "saveDayStatuses " + size + " students: " + micros + " us");
+            assertEquals(size, saved);
+        }
+    }
+
+    //300 students in 10 classes, every weekday for 5 years
+    @Test
+    public void monthlyStore_sizeAndLatencyBenchmark() {
+        long first = EpochDays.of(2019, 1, 1);
+        long last = EpochDays.of(2024, 1, 1);
+        long[] cids = new long[10];
+        ArrayList<ArrayList<StudentItems>> classes = new ArrayList<>();
+        for (int c = 0; c < cids.length; c++) {
+            cids[c] = dbHelper.addClass("Class " + c, "A");
+            classes.add(roster(cids[c], 30));
+        }
+        long start = SystemClock.elapsedRealtime();
+        for (long day = first; day < last; day++) {
+            //epoch day 0 was a Thursday, skip Friday and Saturday
+            long weekday = (day + 4) % 7;
+            if (weekday == 5 || weekday == 6) continue;
+            for (int c = 0; c < cids.length; c++) {
+                for (StudentItems item : classes.get(c)) item.setStatus((item.getSid() * 31 + day) % 9 == 0 ? "A" : "P");
+                dbHelper.saveDayStatuses(cids[c], day, classes.get(c));
+            }
+        }
+        Log.i(TAG, "5 year dataset written in " + (SystemClock.elapsedRealtime() - start) + " ms");
+
+        long dailyRead = readAllMonths(dbHelper, cids, first, last);
+        long dailyBytes = compactedSize();
+        MonthlyStatusStore monthlyStore = dbHelper.monthlyStore();
+        start = SystemClock.elapsedRealtime();
+        long monthRows = monthlyStore.migrateFromDaily();
+        long migrate = SystemClock.elapsedRealtime() - start;
+        long monthlyRead = readAllMonths(monthlyStore, cids, first, last);
+        DBHelperInstrumentedTest.assertSameMonth(dbHelper.getMonthMatrix(cids[3], 2021, 6), monthlyStore.getMonthMatrix(cids[3], 2021, 6), classes.get(3));
+        long dayRows = DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), DBHelper.StatusTableName);
+        dbHelper.getWritableDatabase().delete(DBHelper.StatusTableName, null, null);
+        long monthlyBytes = compactedSize();
+        Log.i(TAG, "daily: " + dayRows + " rows, " + dailyBytes + " bytes, all months read in " + dailyRead + " ms");
+        Log.i(TAG, "monthly: " + monthRows + " rows, " + monthlyBytes + " bytes, all months read in " + monthlyRead + " ms, migrated in " + migrate + " ms");
+        assertTrue(monthlyBytes < dailyBytes);
+    }
+
+    private long readAllMonths(AttendanceStore store, long[] cids, long first, long last) {
+        long start = SystemClock.elapsedRealtime();
+        for (long month = first; month < last; month = EpochDays.nextMonth(month)) {
+            for (long cid : cids) store.getMonthMatrix(cid, EpochDays.year(month), EpochDays.month(month));
+        }
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    private long compactedSize() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.execSQL("VACUUM");
+        Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+        cursor.moveToFirst();
+        cursor.close();
+        return context.getDatabasePath(DB_NAME).length();
+    }
+
+    @Test
+    public void writeMonth_benchmark() throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        for (int size : new int[]{50, 500, 5000}) {
+            long cid = markedClass(size);
+            File file = new File(context.getCacheDir(), "report-" + size + ".pdf");
+            runtime.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long start = SystemClock.elapsedRealtime();
+            int rows = new AttendanceReport(dbHelper).writeMonth(cid, 2023, 3, new FileOutputStream(file));
+            long millis = SystemClock.elapsedRealtime() - start;
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+            Log.i(TAG, "writeMonth " + size + " rows: " + millis + " ms, " + file.length() / 1024 + " KiB, heap delta " + (heapAfter - heapBefore) / 1024 + " KiB");
+            assertEquals(size, rows);
+            file.delete();
+        }
+    }
+
+    @Test
+    public void termReport_workerScalingBenchmark() throws Exception {
+        for (int i = 0; i < 16; i++) markedClass(100 + i);
+        long[] months = {EpochDays.of(2023, 3, 1)};
+        long single = 0;
+        for (int workers : new int[]{1, 2, 4, 8}) {
+            File file = new File(context.getCacheDir(), "term-" + workers + ".pdf");
+            long start = SystemClock.elapsedRealtime();
+            new TermReport(dbHelper, context.getCacheDir(), workers, ExportProfile.FAST_DRAFT).write(months, new FileOutputStream(file), null);
+            long millis = SystemClock.elapsedRealtime() - start;
+            if (workers == 1) single = millis;
+            Log.i(TAG, "term report 16 classes, " + workers + " workers: " + millis + " ms, speedup " + String.format(Locale.US, "%.2f", single / (double) Math.max(1, millis)) + "x, cores " + Runtime.getRuntime().availableProcessors());
+            file.delete();
+        }
+    }
+
+    @Test
+    public void exportProfiles_benchmark() {
+        List<ExportBenchmark.Result> results = ExportBenchmark.run(context);
+        for (ExportBenchmark.Result result : results) Log.i(TAG, result.toString());
+        assertEquals(ExportProfile.values().length, results.size());
+        assertTrue(results.get(ExportProfile.COMPACT_ARCHIVE.ordinal()).bytes < results.get(ExportProfile.FAST_DRAFT.ordinal()).bytes);
+    }
+
+    @Test
+    public void csv_millionRowBenchmark() throws Exception {
+        long cid = dbHelper.addClass("Class 9", "A");
+        ArrayList<StudentItems> studentItems = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            StudentItems item = new StudentItems(dbHelper.addStudent(cid, i, "Student " + i), String.valueOf(i), "Student " + i);
+            item.setStatus(i % 4 == 0 ? "A" : "P");
+            studentItems.add(item);
+        }
+        long first = EpochDays.of(2015, 1, 1);
+        for (long day = first; day < first + 2000; day++) dbHelper.saveDayStatuses(cid, day, studentItems);
+        CsvExporter exporter = new CsvExporter(dbHelper, CsvExporter.CSV);
+        assertEquals(1000000, exporter.countRows(cid, Long.MIN_VALUE, Long.MAX_VALUE));
+        File file = new File(context.getCacheDir(), "history.csv");
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = SystemClock.elapsedRealtime();
+        long rows = exporter.write(cid, Long.MIN_VALUE, Long.MAX_VALUE, new FileOutputStream(file), null);
+        long millis = SystemClock.elapsedRealtime() - start;
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+        Log.i(TAG, "csv " + rows + " rows: " + millis + " ms, " + file.length() / 1024 + " KiB, heap delta " + (heapAfter - heapBefore) / 1024 + " KiB");
+        assertEquals(1000000, rows);
+        //seconds, not minutes
+        assertTrue(millis < 10000);
+        file.delete();
+    }
+
+    @Test
+    public void importCsv_benchmark() throws Exception {
+        long cid = dbHelper.addClass("Class 6", "A");
+        StringBuilder csv = new StringBuilder("roll,name\n");
+        for (int i = 1; i <= 10000; i++) csv.append(i).append(",Student ").append(i).append('\n');
+        long start = SystemClock.elapsedRealtime();
+        ImportResult result = new RosterImporter(dbHelper).importCsv(cid, new ByteArrayInputStream(csv.toString().getBytes("UTF-8")));
+        long millis = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "importCsv 10000 rows: " + millis + " ms");
+        assertEquals(10000, result.inserted);
+        //a few seconds at most
+        assertTrue(millis < 5000);
+    }
+
+    @Test
+    public void analytics_schoolYearBenchmark() {
+        long[] cids = new long[20];
+        for (int c = 0; c < cids.length; c++) {
+            cids[c] = dbHelper.addClass("Class " + c, "A");
+            ArrayList<StudentItems> studentItems = roster(cids[c], 40);
+            for (int day = 0; day < 200; day++) {
+                for (StudentItems item : studentItems) item.setStatus((item.getSid() + day) % 9 == 0 ? "A" : "P");
+                dbHelper.saveDayStatuses(cids[c], MARCH_1 + day, studentItems);
+            }
+        }
+        long start = SystemClock.elapsedRealtime();
+        int students = 0;
+        for (long cid : cids) {
+            AttendanceAnalytics analytics = AttendanceAnalytics.load(dbHelper, cid);
+            for (long sid : analytics.getSids()) {
+                assertEquals(200, analytics.stats(sid).marked);
+                students++;
+            }
+        }
+        long millis = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "analytics " + students + " students x 200 days: " + millis + " ms");
+        assertEquals(800, students);
+        //well under a second for the whole school
+        assertTrue(millis < 1000);
+    }
+
+    @Test
+    public void searchStudents_benchmark() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String[] names = {"Rahim", "Karim", "Salma", "Fatema", "Abdul", "Nusrat", "Tanvir", "Sadia"};
+        db.beginTransactionNonExclusive();
+        try {
+            for (int c = 0; c < 40; c++) {
+                long cid = dbHelper.addClass("Class " + (6 + c % 5), String.valueOf((char) ('A' + c / 5)));
+                for (int i = 1; i <= 500; i++) dbHelper.addStudent(cid, i, names[i % names.length] + " " + names[(i / 8 + c) % names.length] + " " + i);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        for (String text : new String[]{"sa", "sal", "salma ka", "tanvir 49"}) {
+            dbHelper.searchStudents(text, SearchViewModel.LIMIT);
+            long start = SystemClock.elapsedRealtimeNanos();
+            int found = dbHelper.searchStudents(text, SearchViewModel.LIMIT).size();
+            long micros = (SystemClock.elapsedRealtimeNanos() - start) / 1000;
+            Log.i(TAG, "search \"" + text + "\" in 20000 students: " + found + " results, " + micros + " us");
+            assertTrue(found > 0);
+            //single-digit milliseconds
+            assertTrue(micros < 10000);
+        }
+    }
+}
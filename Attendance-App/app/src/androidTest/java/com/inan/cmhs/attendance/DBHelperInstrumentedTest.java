@@ -0,0 +1,386 @@
+package com.inan.cmhs.attendance;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * DBHelper tests, run on a scratch database so the app data is untouched.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DBHelperInstrumentedTest {
+    private static final String TAG = "DBHelperTest";
+    private static final String DB_NAME = "dbhelper-test.db";
+    private static final long MARCH_1 = EpochDays.of(2023, 3, 1);
+    private Context context;
+    private DBHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DBHelper(context, DB_NAME);
+        //ids start again in every scratch database
+        RangeIndex.invalidateAll();
+        RosterCache.invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    private ArrayList<StudentItems> roster(long cid, int size) {
+        ArrayList<StudentItems> studentItems = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            long sid = dbHelper.addStudent(cid, i, "Student " + i);
+            StudentItems item = new StudentItems(sid, String.valueOf(i), "Student " + i);
+            item.setStatus(i % 3 == 0 ? "A" : "P");
+            studentItems.add(item);
+        }
+        return studentItems;
+    }
+
+    @Test
+    public void saveDayStatuses_overwritesPreviousMarks() {
+        long cid = dbHelper.addClass("Class 6", "A");
+        ArrayList<StudentItems> studentItems = roster(cid, 10);
+        assertEquals(10, dbHelper.saveDayStatuses(cid, MARCH_1, studentItems));
+        for (StudentItems item : studentItems) item.setStatus("P".equals(item.getStatus()) ? "A" : "P");
+        assertEquals(10, dbHelper.saveDayStatuses(cid, MARCH_1, studentItems));
+        for (StudentItems item : studentItems) {
+            assertEquals(item.getStatus(), dbHelper.getStatus(item.getSid(), MARCH_1));
+        }
+    }
+
+    @Test
+    public void addStatus_replacesTheDaysMark() {
+        long cid = dbHelper.addClass("Class 6", "A");
+        long sid = dbHelper.addStudent(cid, 1, "Student 1");
+        dbHelper.addStatus(sid, cid, MARCH_1, "P");
+        dbHelper.addStatus(sid, cid, MARCH_1, "A");
+        assertEquals("A", dbHelper.getStatus(sid, MARCH_1));
+        assertEquals(1, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), DBHelper.StatusTableName));
+    }
+
+    @Test
+    public void rollup_followsInsertsReplacesAndDeletes() {
+        long cid = dbHelper.addClass("Class 6", "A");
+        ArrayList<StudentItems> studentItems = roster(cid, 9);
+        dbHelper.saveDayStatuses(cid, MARCH_1, studentItems);
+        dbHelper.saveDayStatuses(cid, MARCH_1 + 1, studentItems);
+        //replacing a day's marks must not count the day twice
+        for (StudentItems item : studentItems) item.setStatus("P");
+        dbHelper.saveDayStatuses(cid, MARCH_1, studentItems);
+        dbHelper.updateStatus(studentItems.get(0).getSid(), MARCH_1 + 1, "A");
+        dbHelper.getWritableDatabase().delete(DBHelper.StatusTableName, DBHelper.S_ID_Status + " = ? AND " + DBHelper.DateKey + " = ?", new String[]{String.valueOf(studentItems.get(1).getSid()), String.valueOf(MARCH_1 + 1)});
+        assertEquals(0, dbHelper.checkRollup());
+        //9 + 8 marked days, 9 present on the 1st and rolls 4, 5, 7, 8 on the 2nd
+        assertEquals(100 * 13 / 17, dbHelper.getMonthPercents(cid, new long[]{MARCH_1})[0]);
+
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + DBHelper.RollupTableName + " SET " + DBHelper.PresentCountKey + " = 0");
+        assertTrue(dbHelper.checkRollup() > 0);
+        dbHelper.rebuildRollup();
+        assertEquals(0, dbHelper.checkRollup());
+    }
+
+    @Test
+    public void getDayStatuses_returnsOnlyThatClassAndDay() {
+        long cid = dbHelper.addClass("Class 6", "A");
+        long other = dbHelper.addClass("Class 6", "B");
+        ArrayList<StudentItems> studentItems = roster(cid, 5);
+        dbHelper.saveDayStatuses(cid, MARCH_1, studentItems);
+        dbHelper.saveDayStatuses(other, MARCH_1, roster(other, 3));
+        dbHelper.saveDayStatuses(cid, MARCH_1 + 1, studentItems);
+        LongSparseArray<String> statuses = dbHelper.getDayStatuses(cid, MARCH_1);
+        assertEquals(5, statuses.size());
+        for (StudentItems item : studentItems) {
+            assertEquals(item.getStatus(), statuses.get(item.getSid()));
+        }
+    }
+
+    @Test
+    public void upgradeFromV1_convertsTextDatesAndDropsDuplicateDays() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        SQLiteDatabase v1 = context.openOrCreateDatabase(DB_NAME, Context.MODE_PRIVATE, null);
+        v1.execSQL(DBHelper.Create_Class_Table);
+        v1.execSQL(DBHelper.Create_Student_Table);
+        v1.execSQL("CREATE TABLE Status_Table(_ID INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,_SID INTEGER NOT NULL,_CID INTEGER NOT NULL,Date_Key DATE NOT NULL,Status_Key TEXT NOT NULL,UNIQUE (_SID ,Date_Key ,Status_Key ))");
+        for (int i = 1; i <= 840; i++) {
+            ContentValues values = new ContentValues();
+            values.put("_SID", i % 40);
+            values.put("_CID", 1);
+            values.put("Date_Key", String.format(Locale.US, "%02d.%02d.2023", i % 28 + 1, i % 12 + 1));
+            values.put("Status_Key", i % 2 == 0 ? "P" : "A");
+            v1.insertOrThrow("Status_Table", null, values);
+        }
+        //v1 allowed a second row for the same day with the other status, the later one wins
+        ContentValues duplicate = new ContentValues();
+        duplicate.put("_SID", 0);
+        duplicate.put("_CID", 1);
+        duplicate.put("Date_Key", "01.01.2023");
+        duplicate.put("Status_Key", "A");
+        v1.insertOrThrow("Status_Table", null, duplicate);
+        v1.setVersion(1);
+        v1.close();
+
+        dbHelper = new DBHelper(context, DB_NAME);
+        assertEquals(840, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), DBHelper.StatusTableName));
+        assertEquals("A", dbHelper.getStatus(0, EpochDays.of(2023, 1, 1)));
+        assertEquals(12, dbHelper.getMonths(1).length);
+        assertEquals(EpochDays.of(2023, 1, 1), dbHelper.getMonths(1)[0]);
+    }
+
+    @Test
+    public void concurrentReadersAndWriters_onlySeeWholeDays() throws Exception {
+        final long cid = dbHelper.addClass("Class 6", "A");
+        final ArrayList<StudentItems> studentItems = roster(cid, 60);
+        final int days = 120;
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<Future<Integer>> writers = new ArrayList<>();
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            final int first = w;
+            writers.add(pool.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    for (int d = first; d < days; d += 2) dbHelper.saveDayStatuses(cid, MARCH_1 + d, studentItems);
+                    return days / 2;
+                }
+            }));
+        }
+        for (int r = 0; r < 4; r++) {
+            final int seed = r;
+            readers.add(pool.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int reads = 0;
+                    while (writing.get()) {
+                        long day = MARCH_1 + (reads * 7 + seed) % days;
+                        int size = dbHelper.getDayStatuses(cid, day).size();
+                        //a class-day is committed in one transaction, so it is either all there or not at all
+                        assertTrue(size == 0 || size == studentItems.size());
+                        dbHelper.getMonthMatrix(cid, 2023, 3 + reads % 4);
+                        reads++;
+                    }
+                    return reads;
+                }
+            }));
+        }
+        for (Future<Integer> writer : writers) writer.get();
+        writing.set(false);
+        int reads = 0;
+        for (Future<Integer> reader : readers) reads += reader.get();
+        pool.shutdown();
+        Log.i(TAG, "stress: " + days + " class-days written alongside " + reads + " reads");
+        for (int d = 0; d < days; d++) assertEquals(studentItems.size(), dbHelper.getDayStatuses(cid, MARCH_1 + d).size());
+    }
+
+    @Test
+    public void monthlyStore_roundTripsThroughDailyTable() {
+        long cid = dbHelper.addClass("Class 6", "A");
+        ArrayList<StudentItems> studentItems = roster(cid, 12);
+        for (int d = 0; d < 31; d++) {
+            for (StudentItems item : studentItems) item.setStatus((item.getSid() + d) % 4 == 0 ? "A" : "P");
+            dbHelper.saveDayStatuses(cid, MARCH_1 + d, studentItems);
+        }
+        MonthlyStatusStore monthlyStore = dbHelper.monthlyStore();
+        assertEquals(12, monthlyStore.migrateFromDaily());
+        assertSameMonth(dbHelper.getMonthMatrix(cid, 2023, 3), monthlyStore.getMonthMatrix(cid, 2023, 3), studentItems);
+        assertEquals(dbHelper.getDayStatuses(cid, MARCH_1 + 30).size(), monthlyStore.getDayStatuses(cid, MARCH_1 + 30).size());
+
+        MonthMatrix daily = dbHelper.getMonthMatrix(cid, 2023, 3);
+        dbHelper.getWritableDatabase().delete(DBHelper.StatusTableName, null, null);
+        assertEquals(12 * 31, monthlyStore.exportToDaily());
+        assertSameMonth(daily, dbHelper.getMonthMatrix(cid, 2023, 3), studentItems);
+    }
+
+    static void assertSameMonth(MonthMatrix expected, MonthMatrix actual, List<StudentItems> studentItems) {
+        assertEquals(expected.days, actual.days);
+        for (StudentItems item : studentItems) {
+            for (int day = 1; day <= expected.days; day++) {
+                assertEquals(expected.getStatus(item.getSid(), day), actual.getStatus(item.getSid(), day));
+            }
+        }
+    }
+
+    @Test
+    public void analytics_streaksSkipUnmarkedDaysAndCountWeekdays() {
+        long cid = dbHelper.addClass("Class 6", "A");
+        long sid = dbHelper.addStudent(cid, 1, "Student 1");
+        //March 2023 starts on a Wednesday, the 4th and 5th are left unmarked
+        String[] marks = {"P", "A", "A", null, null, "A", "P", "A", "A"};
+        for (int i = 0; i < marks.length; i++) {
+            if (marks[i] != null) dbHelper.addStatus(sid, cid, MARCH_1 + i, marks[i]);
+        }
+        AttendanceAnalytics.Stats stats = AttendanceAnalytics.load(dbHelper, cid).stats(sid);
+        assertEquals(2, stats.present);
+        assertEquals(7, stats.marked);
+        assertEquals(3, stats.longestAbsence);
+        assertEquals(2, stats.currentAbsence);
+        assertEquals(2, stats.absentByWeekday[3]);
+        assertEquals(2, stats.markedByWeekday[3]);
+        assertEquals(1, stats.absentByWeekday[0]);
+        assertEquals(0, stats.absentByWeekday[1]);
+        assertNull(AttendanceAnalytics.load(dbHelper, cid).stats(sid + 1));
+        //a student's own rows give the same numbers as the whole class
+        AttendanceAnalytics.Stats own = AttendanceAnalytics.load(dbHelper, cid, sid).stats(sid);
+        assertEquals(stats.present, own.present);
+        assertEquals(stats.longestAbsence, own.longestAbsence);
+        assertEquals(stats.currentAbsence, own.currentAbsence);
+        assertArrayEquals(stats.absentByWeekday, own.absentByWeekday);
+    }
+
+    @Test
+    public void getDefaulters_ranksStudentsBelowThresholdAcrossClasses() {
+        long six = dbHelper.addClass("Class 6", "A");
+        long seven = dbHelper.addClass("Class 7", "A");
+        long good = dbHelper.addStudent(six, 1, "Good");
+        long poor = dbHelper.addStudent(six, 2, "Poor");
+        long worse = dbHelper.addStudent(seven, 1, "Worse");
+        for (int day = 0; day < 10; day++) {
+            dbHelper.addStatus(good, six, MARCH_1 + day, day < 9 ? "P" : "A");
+            dbHelper.addStatus(poor, six, MARCH_1 + day, day < 7 ? "P" : "A");
+            dbHelper.addStatus(worse, seven, MARCH_1 + day, day < 2 ? "P" : "A");
+            //before the term, not counted
+            dbHelper.addStatus(worse, seven, MARCH_1 - 40 - day, "P");
+        }
+        ArrayList<Defaulter> defaulters = dbHelper.getDefaulters(MARCH_1, 75);
+        assertEquals(2, defaulters.size());
+        assertEquals(worse, defaulters.get(0).sid);
+        assertEquals(20, defaulters.get(0).percent());
+        assertEquals(poor, defaulters.get(1).sid);
+        assertEquals("Class 6", defaulters.get(1).className);
+    }
+
+    @Test
+    public void rangeIndex_matchesAScanAndFollowsSaves() {
+        long cid = dbHelper.addClass("Class 6", "A");
+        ArrayList<StudentItems> studentItems = roster(cid, 5);
+        for (int day = 0; day < 100; day++) {
+            if (day % 7 == 3) continue;
+            for (StudentItems item : studentItems) item.setStatus((item.getSid() * 31 + day) % 4 == 0 ? "A" : "P");
+            dbHelper.saveDayStatuses(cid, MARCH_1 + day, studentItems);
+        }
+        long sid = studentItems.get(2).getSid();
+        RangeIndex index = RangeIndex.get(dbHelper, cid);
+        for (long from = MARCH_1 - 5; from < MARCH_1 + 105; from += 13) {
+            for (long to = from; to < MARCH_1 + 110; to += 17) {
+                assertArrayEquals(scan(sid, from, to), index.totals(sid, from, to));
+            }
+        }
+        //a save after the build is a point update on the cached index
+        dbHelper.addStatus(sid, cid, MARCH_1 + 120, "A");
+        assertSame(index, RangeIndex.get(dbHelper, cid));
+        assertArrayEquals(scan(sid, MARCH_1, MARCH_1 + 200), index.totals(sid, MARCH_1, MARCH_1 + 200));
+        //the last 3 marked days are the 98th, 99th and the one just added
+        int[] last = index.lastMarkedDays(sid, 3);
+        assertEquals(3, last[1]);
+        assertEquals(scan(sid, MARCH_1 + 98, MARCH_1 + 100)[0], last[0]);
+
+        //a mistyped old date doesn't stretch the window, ranges reaching it are counted in SQL
+        dbHelper.addStatus(sid, cid, EpochDays.of(1990, 1, 1), "P");
+        assertTrue(RangeIndex.get(dbHelper, cid).capacity <= RangeIndex.HISTORY_DAYS + RangeIndex.HEADROOM_DAYS);
+        assertArrayEquals(scan(sid, Long.MIN_VALUE, Long.MAX_VALUE), RangeIndex.totals(dbHelper, cid, sid, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertArrayEquals(scan(sid, MARCH_1, MARCH_1 + 30), RangeIndex.totals(dbHelper, cid, sid, MARCH_1, MARCH_1 + 30));
+        assertArrayEquals(last, RangeIndex.lastMarkedDays(dbHelper, cid, sid, 3));
+    }
+
+    //{present, marked} straight from Status_Table
+    private int[] scan(long sid, long from, long to) {
+        String[] args = {String.valueOf(sid), String.valueOf(from), String.valueOf(to)};
+        String where = DBHelper.S_ID_Status + " = ? AND " + DBHelper.DateKey + " >= ? AND " + DBHelper.DateKey + " < ?";
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        return new int[]{(int) DatabaseUtils.queryNumEntries(db, DBHelper.StatusTableName, where + " AND " + DBHelper.StatusKey + " = 'P'", args),
+                (int) DatabaseUtils.queryNumEntries(db, DBHelper.StatusTableName, where, args)};
+    }
+
+    @Test
+    public void rosterCache_hitsUntilTheClassChanges() throws Exception {
+        long cid = dbHelper.addClass("Class 6", "A");
+        long other = dbHelper.addClass("Class 6", "B");
+        roster(cid, 5);
+        roster(other, 3);
+        int misses = RosterCache.missCount(), hits = RosterCache.hitCount();
+        dbHelper.getStudents(cid);
+        dbHelper.getStudents(other);
+        //handed out lists are the caller's, marking them doesn't reach the next one
+        dbHelper.getStudents(cid).get(0).setStatus("P");
+        assertEquals("", dbHelper.getStudents(cid).get(0).getStatus());
+        assertEquals(misses + 2, RosterCache.missCount());
+        assertEquals(hits + 2, RosterCache.hitCount());
+
+        long sid = dbHelper.addStudent(cid, 6, "Student 6");
+        assertEquals(6, dbHelper.getStudents(cid).size());
+        dbHelper.editstudent(sid, 7, "Renamed");
+        assertEquals("Renamed", dbHelper.getStudents(cid).get(5).getName());
+        dbHelper.removeStudent(sid);
+        assertEquals(5, dbHelper.getStudents(cid).size());
+        new RosterImporter(dbHelper).importCsv(cid, new ByteArrayInputStream("8,Imported\n".getBytes("UTF-8")));
+        assertEquals(6, dbHelper.getStudents(cid).size());
+        //none of that touched the other class
+        dbHelper.getStudents(other);
+        assertEquals(misses + 6, RosterCache.missCount());
+        Log.i(TAG, "roster cache: " + RosterCache.stats());
+    }
+
+    @Test
+    public void searchStudents_prefixMatchesAndFollowsEdits() {
+        long six = dbHelper.addClass("Class 6", "A");
+        long seven = dbHelper.addClass("Class 7", "B");
+        long rahim = dbHelper.addStudent(six, 12, "Rahim Uddin");
+        dbHelper.addStudent(seven, 3, "Rahima Khatun");
+        dbHelper.addStudent(seven, 4, "Karim");
+        assertEquals("Rah* 7*", DBHelper.matchQuery(" Rah, \"7 "));
+        assertNull(DBHelper.matchQuery("\"*-"));
+        assertEquals(2, dbHelper.searchStudents("rah", 10).size());
+        assertEquals(1, dbHelper.searchStudents("rah class 7", 10).size());
+        assertEquals(rahim, dbHelper.searchStudents("uddin 12", 10).get(0).sid);
+
+        dbHelper.editstudent(rahim, 12, "Rafiq Uddin");
+        assertEquals(1, dbHelper.searchStudents("rah", 10).size());
+        dbHelper.editclass((int) seven, "Class 8", "B");
+        assertEquals(2, dbHelper.searchStudents("class 8", 10).size());
+        dbHelper.removeStudent(rahim);
+        assertEquals(0, dbHelper.searchStudents("rafiq", 10).size());
+    }
+
+    @Test
+    public void importCsv_reportsCollisionsAndBadLines() throws Exception {
+        long cid = dbHelper.addClass("Class 6", "A");
+        dbHelper.addStudent(cid, 1, "Rahim");
+        String csv = "Roll,Name,Class,Section\n1,Rahim\n2,\"Karim, Md\"\nx,Bad\n3,Salma,Class 7,B\n3,Salma,Class 7,B\n4,\n";
+        ImportResult result = new RosterImporter(dbHelper).importCsv(cid, new ByteArrayInputStream(csv.getBytes("UTF-8")));
+        assertEquals(2, result.inserted);
+        assertEquals(2, result.collisions);
+        assertEquals(2, result.invalid);
+        assertEquals(1, result.classesCreated);
+        assertEquals("Karim, Md", dbHelper.getStudents(cid).get(1).getName());
+    }
+}
@@ -0,0 +1,172 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Report generation tests, run on a scratch database so the app data is untouched.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReportInstrumentedTest {
+    private static final String DB_NAME = "report.db";
+    private Context context;
+    private DBHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DBHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    //a class of size students with every weekday of March 2023 marked
+    private long markedClass(int size) {
+        long cid = dbHelper.addClass("Class " + size, "A");
+        ArrayList<StudentItems> studentItems = new ArrayList<>(size);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 1; i <= size; i++) {
+                long sid = dbHelper.addStudent(cid, i, "Student " + i);
+                studentItems.add(new StudentItems(sid, String.valueOf(i), "Student " + i));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        for (long day = EpochDays.of(2023, 3, 1); day < EpochDays.of(2023, 4, 1); day++) {
+            //1970-01-01 was a Thursday, so day % 7 == 2 is a Saturday and 3 a Sunday
+            if (day % 7 == 2 || day % 7 == 3) continue;
+            for (int i = 0; i < size; i++) studentItems.get(i).setStatus((i + day) % 5 == 0 ? "A" : "P");
+            dbHelper.saveDayStatuses(cid, day, studentItems);
+        }
+        return cid;
+    }
+
+    @Test
+    public void writeMonth_writesEveryStudentRow() throws Exception {
+        long cid = markedClass(30);
+        File file = new File(context.getCacheDir(), "report-test.pdf");
+        int rows = new AttendanceReport(dbHelper).writeMonth(cid, 2023, 3, new FileOutputStream(file));
+        assertEquals(30, rows);
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(file));
+        assertTrue(pdfDocument.getNumberOfPages() >= 1);
+        pdfDocument.close();
+        file.delete();
+    }
+
+    @Test
+    public void writeMonth_pagesShareOneHeaderXObject() throws Exception {
+        long cid = markedClass(200);
+        File file = new File(context.getCacheDir(), "report-header.pdf");
+        new AttendanceReport(dbHelper).writeMonth(cid, 2023, 3, new FileOutputStream(file));
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(file));
+        assertTrue(pdfDocument.getNumberOfPages() > 1);
+        PdfDictionary first = pdfDocument.getPage(1).getResources().getResource(PdfName.XObject);
+        for (int page = 2; page <= pdfDocument.getNumberOfPages(); page++) {
+            PdfDictionary xObjects = pdfDocument.getPage(page).getResources().getResource(PdfName.XObject);
+            assertEquals(first.values().iterator().next().getIndirectReference(), xObjects.values().iterator().next().getIndirectReference());
+        }
+        pdfDocument.close();
+        file.delete();
+    }
+
+    @Test
+    public void addPage_printPageFitsOnePage() throws Exception {
+        long cid = markedClass(50);
+        File file = new File(context.getCacheDir(), "print-page.pdf");
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(new FileOutputStream(file)));
+        ReportResources resources = new ReportResources(pdfDocument, PageSize.A4.rotate());
+        Document document = new Document(pdfDocument, PageSize.A4.rotate());
+        document.setMargins(ReportResources.MARGIN + ReportResources.HEADER_HEIGHT + 8, ReportResources.MARGIN, ReportResources.MARGIN, ReportResources.MARGIN);
+        MonthMatrix matrix = dbHelper.getMonthMatrix(cid, 2023, 3);
+        AttendanceReport report = new AttendanceReport(dbHelper);
+        assertEquals(AttendancePrintAdapter.ROWS_PER_PAGE, report.addPage(document, resources, cid, matrix, 0, AttendancePrintAdapter.ROWS_PER_PAGE, false));
+        //the last page only has what's left
+        assertEquals(50 - 2 * AttendancePrintAdapter.ROWS_PER_PAGE, report.addPage(document, resources, cid, matrix, 2 * AttendancePrintAdapter.ROWS_PER_PAGE, AttendancePrintAdapter.ROWS_PER_PAGE, true));
+        document.close();
+        pdfDocument = new PdfDocument(new PdfReader(file));
+        assertEquals(2, pdfDocument.getNumberOfPages());
+        pdfDocument.close();
+        file.delete();
+    }
+
+    @Test
+    public void termReport_mergesEveryClassAndMonth() throws Exception {
+        for (int i = 0; i < 3; i++) markedClass(10 + i);
+        File file = new File(context.getCacheDir(), "term-test.pdf");
+        long[] months = {EpochDays.of(2023, 2, 1), EpochDays.of(2023, 3, 1)};
+        int classes = new TermReport(dbHelper, context.getCacheDir(), 2, ExportProfile.SHAREABLE).write(months, new FileOutputStream(file), null);
+        assertEquals(3, classes);
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(file));
+        //every class starts each month on a new page
+        assertTrue(pdfDocument.getNumberOfPages() >= classes * months.length);
+        pdfDocument.close();
+        file.delete();
+    }
+
+    @Test
+    public void reportCache_rendersAgainOnlyAfterAChange() throws Exception {
+        long cid = markedClass(20);
+        long march = EpochDays.of(2023, 3, 1);
+        ReportCache reportCache = new ReportCache(dbHelper, new File(context.getCacheDir(), "report-cache-test"), ReportCache.MAX_BYTES);
+        reportCache.clear();
+        File first = reportCache.month(cid, march, ExportProfile.FAST_DRAFT, null);
+        assertEquals(0, reportCache.countRows(cid, new long[]{march}, ExportProfile.FAST_DRAFT));
+        assertEquals(first, reportCache.month(cid, march, ExportProfile.FAST_DRAFT, null));
+        //a new student shows up in every month, a mark only in its own
+        long version = dbHelper.getReportVersion(cid, march);
+        long june = EpochDays.of(2023, 6, 1);
+        long unmarked = dbHelper.getReportVersion(cid, june);
+        long sid = dbHelper.addStudent(cid, 21, "Student 21");
+        assertTrue(dbHelper.getReportVersion(cid, march) > version);
+        assertTrue(dbHelper.getReportVersion(cid, june) > unmarked);
+        version = dbHelper.getReportVersion(cid, march);
+        dbHelper.addStatus(sid, cid, EpochDays.of(2023, 4, 3), "A");
+        assertEquals(version, dbHelper.getReportVersion(cid, march));
+        File second = reportCache.month(cid, march, ExportProfile.FAST_DRAFT, null);
+        assertNotEquals(first, second);
+        assertFalse(first.exists());
+        reportCache.clear();
+    }
+
+    @Test
+    public void csv_quotesSeparatorsAndWritesUtf8() throws Exception {
+        long cid = dbHelper.addClass("Class 6", "A");
+        long sid = dbHelper.addStudent(cid, 7, "Rahim, \"Bappy\" \u09b0\u09b9\u09bf\u09ae");
+        dbHelper.addStatus(sid, cid, EpochDays.of(2023, 3, 5), "P");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = new CsvExporter(dbHelper, CsvExporter.CSV).write(-1, Long.MIN_VALUE, Long.MAX_VALUE, out, null);
+        assertEquals(1, rows);
+        assertEquals("Date,Class,Section,Roll,Name,Status\r\n2023-03-05,Class 6,A,7,\"Rahim, \"\"Bappy\"\" \u09b0\u09b9\u09bf\u09ae\",P\r\n", out.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,161 @@
+package com.inan.cmhs.attendance;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Arrays;
+
+import static com.inan.cmhs.attendance.DBHelper.C_ID;
+import static com.inan.cmhs.attendance.DBHelper.DateKey;
+import static com.inan.cmhs.attendance.DBHelper.S_ID_Status;
+import static com.inan.cmhs.attendance.DBHelper.StatusKey;
+import static com.inan.cmhs.attendance.DBHelper.StatusTableName;
+
+//A class's whole history as bitsets, bit i of a student's words is the i-th day from the class's first marked day.
+//Percentages and weekday counts are popcounts, against one mask per weekday for the latter, and streaks walk the
+//marked bits with numberOfTrailingZeros, so nothing goes back to Status_Table once the class is loaded.
+class AttendanceAnalytics {
+    static final String[] WEEKDAYS = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+    //one student's numbers, weekday arrays are indexed like WEEKDAYS
+    static class Stats {
+        final long sid;
+        final int present, marked;
+        final int longestAbsence, currentAbsence;
+        final int[] absentByWeekday = new int[7], markedByWeekday = new int[7];
+
+        Stats(long sid, int present, int marked, int longestAbsence, int currentAbsence) {
+            this.sid = sid;
+            this.present = present;
+            this.marked = marked;
+            this.longestAbsence = longestAbsence;
+            this.currentAbsence = currentAbsence;
+        }
+
+        int absent() {
+            return marked - present;
+        }
+
+        //-1 when nothing is marked
+        int percent() {
+            return marked > 0 ? present * 100 / marked : -1;
+        }
+    }
+
+    final long cid;
+    //epoch day of bit 0
+    final long firstDay;
+    final int days;
+    private final long[] sids;
+    private final long[][] present, marked;
+    private final long[][] weekdayMasks = new long[7][];
+
+    private AttendanceAnalytics(long cid, long firstDay, int days, long[] sids, long[][] present, long[][] marked) {
+        this.cid = cid;
+        this.firstDay = firstDay;
+        this.days = days;
+        this.sids = sids;
+        this.present = present;
+        this.marked = marked;
+        int words = words(days);
+        for (int weekday = 0; weekday < 7; weekday++) weekdayMasks[weekday] = new long[words];
+        for (int i = 0; i < days; i++) weekdayMasks[weekday(firstDay + i)][i >> 6] |= 1L << i;
+    }
+
+    //every mark of the class in one pass over Status_Table
+    static AttendanceAnalytics load(DBHelper dbHelper, long cid) {
+        return load(dbHelper, cid, C_ID + " = ?", new String[]{String.valueOf(cid)});
+    }
+
+    //only the student's marks, for a screen that shows one student's stats
+    static AttendanceAnalytics load(DBHelper dbHelper, long cid, long sid) {
+        return load(dbHelper, cid, C_ID + " = ? AND " + S_ID_Status + " = ?", new String[]{String.valueOf(cid), String.valueOf(sid)});
+    }
+
+    private static AttendanceAnalytics load(DBHelper dbHelper, long cid, String selection, String[] args) {
+        SQLiteDatabase sqLiteDatabase = dbHelper.getReadableDatabase();
+        long first, last;
+        Cursor range = sqLiteDatabase.rawQuery("SELECT MIN(" + DateKey + "), MAX(" + DateKey + ") FROM " + StatusTableName + " WHERE " + selection, args);
+        try {
+            if (!range.moveToFirst() || range.isNull(0)) return new AttendanceAnalytics(cid, 0, 0, new long[0], new long[0][], new long[0][]);
+            first = range.getLong(0);
+            last = range.getLong(1);
+        } finally {
+            range.close();
+        }
+        int days = (int) (last - first + 1);
+        int words = words(days);
+        int size = 0;
+        long[] sids = new long[64];
+        long[][] present = new long[64][];
+        long[][] marked = new long[64][];
+        Cursor cursor = sqLiteDatabase.query(StatusTableName, new String[]{S_ID_Status, DateKey, StatusKey}, selection, args, null, null, S_ID_Status);
+        try {
+            while (cursor.moveToNext()) {
+                long sid = cursor.getLong(0);
+                if (size == 0 || sids[size - 1] != sid) {
+                    if (size == sids.length) {
+                        sids = Arrays.copyOf(sids, size * 2);
+                        present = Arrays.copyOf(present, size * 2);
+                        marked = Arrays.copyOf(marked, size * 2);
+                    }
+                    sids[size] = sid;
+                    present[size] = new long[words];
+                    marked[size] = new long[words];
+                    size++;
+                }
+                int i = (int) (cursor.getLong(1) - first);
+                marked[size - 1][i >> 6] |= 1L << i;
+                if ("P".equals(cursor.getString(2))) present[size - 1][i >> 6] |= 1L << i;
+            }
+        } finally {
+            cursor.close();
+        }
+        return new AttendanceAnalytics(cid, first, days, Arrays.copyOf(sids, size), Arrays.copyOf(present, size), Arrays.copyOf(marked, size));
+    }
+
+    //students with at least one mark, by _SID
+    long[] getSids() {
+        return sids.clone();
+    }
+
+    //null when the student has no marks in this class
+    Stats stats(long sid) {
+        int index = Arrays.binarySearch(sids, sid);
+        if (index < 0) return null;
+        long[] present = this.present[index];
+        long[] marked = this.marked[index];
+        int presentDays = 0, markedDays = 0, run = 0, longest = 0;
+        for (int word = 0; word < marked.length; word++) {
+            presentDays += Long.bitCount(present[word]);
+            markedDays += Long.bitCount(marked[word]);
+            long absent = marked[word] & ~present[word];
+            //unmarked days (weekends, holidays) neither break nor extend a streak
+            for (long bits = marked[word]; bits != 0; bits &= bits - 1) {
+                if ((absent >>> Long.numberOfTrailingZeros(bits) & 1) != 0) {
+                    if (++run > longest) longest = run;
+                } else {
+                    run = 0;
+                }
+            }
+        }
+        Stats stats = new Stats(sid, presentDays, markedDays, longest, run);
+        for (int weekday = 0; weekday < 7; weekday++) {
+            long[] mask = weekdayMasks[weekday];
+            for (int word = 0; word < marked.length; word++) {
+                stats.markedByWeekday[weekday] += Long.bitCount(marked[word] & mask[word]);
+                stats.absentByWeekday[weekday] += Long.bitCount(marked[word] & ~present[word] & mask[word]);
+            }
+        }
+        return stats;
+    }
+
+    private static int words(int days) {
+        return (days + 63) >> 6;
+    }
+
+    //0 is Monday, 1970-01-01 was a Thursday
+    static int weekday(long epochDay) {
+        return (int) (((epochDay + 3) % 7 + 7) % 7);
+    }
+}
@@ -0,0 +1,217 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.OverScroller;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+//Month sheet drawn straight onto the canvas. Roll and Name stay frozen on the left and the day numbers
+//stay frozen on top, only the rows and days that are on screen get drawn, so row count doesn't matter.
+public class AttendanceGridView extends View {
+    private static final String[] DAYS = new String[32];
+
+    static {
+        for (int day = 1; day < DAYS.length; day++) DAYS[day] = day < 10 ? "0" + day : String.valueOf(day);
+    }
+
+    private final float rowHeight, dayWidth, rollWidth, nameWidth, padding;
+    private final TextPaint textPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint boldPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint linePaint = new Paint();
+    private final Paint presentPaint = new Paint();
+    private final Paint absentPaint = new Paint();
+    private final Paint headerPaint = new Paint();
+    private final float textOffset;
+    private final OverScroller scroller;
+    private final GestureDetector gestureDetector;
+
+    private long[] sids = new long[0];
+    private String[] rolls = new String[0];
+    private String[] names = new String[0];
+    private String[] shownNames = new String[0];
+    private MonthMatrix matrix;
+    private int days;
+    private int offsetX, offsetY;
+
+    public AttendanceGridView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        rowHeight = dp(48);
+        dayWidth = dp(48);
+        rollWidth = dp(64);
+        nameWidth = dp(160);
+        padding = dp(16);
+        textPaint.setColor(Color.BLACK);
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 16, getResources().getDisplayMetrics()));
+        boldPaint.set(textPaint);
+        boldPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        Paint.FontMetrics fontMetrics = textPaint.getFontMetrics();
+        textOffset = rowHeight / 2 - (fontMetrics.ascent + fontMetrics.descent) / 2;
+        linePaint.setColor(Color.BLACK);
+        presentPaint.setColor(ContextCompat.getColor(context, R.color.Present));
+        absentPaint.setColor(ContextCompat.getColor(context, R.color.Absent));
+        headerPaint.setColor(Color.WHITE);
+        scroller = new OverScroller(context);
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                scroller.forceFinished(true);
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                scrollGridTo(offsetX + (int) distanceX, offsetY + (int) distanceY);
+                return true;
+            }
+
+            @Override
+            public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+                scroller.fling(offsetX, offsetY, (int) -velocityX, (int) -velocityY, 0, maxOffsetX(), 0, maxOffsetY());
+                postInvalidateOnAnimation();
+                return true;
+            }
+        });
+    }
+
+    private float dp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, getResources().getDisplayMetrics());
+    }
+
+    //rows are shown in the order given, statuses are looked up in the matrix by sid
+    public void setData(long[] sids, int[] rolls, String[] names, MonthMatrix matrix) {
+        this.sids = sids;
+        this.names = names;
+        this.matrix = matrix;
+        this.days = matrix.days;
+        this.rolls = new String[rolls.length];
+        for (int i = 0; i < rolls.length; i++) this.rolls[i] = String.valueOf(rolls[i]);
+        shownNames = new String[names.length];
+        scroller.forceFinished(true);
+        offsetX = 0;
+        offsetY = 0;
+        invalidate();
+    }
+
+    private float frozenWidth() {
+        return rollWidth + nameWidth;
+    }
+
+    private int maxOffsetX() {
+        return Math.max(0, (int) (days * dayWidth - (getWidth() - frozenWidth())));
+    }
+
+    private int maxOffsetY() {
+        return Math.max(0, (int) (sids.length * rowHeight - (getHeight() - rowHeight)));
+    }
+
+    private void scrollGridTo(int x, int y) {
+        x = Math.max(0, Math.min(x, maxOffsetX()));
+        y = Math.max(0, Math.min(y, maxOffsetY()));
+        if (x != offsetX || y != offsetY) {
+            offsetX = x;
+            offsetY = y;
+            invalidate();
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    public void computeScroll() {
+        if (scroller.computeScrollOffset()) {
+            scrollGridTo(scroller.getCurrX(), scroller.getCurrY());
+            postInvalidateOnAnimation();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        scrollGridTo(offsetX, offsetY);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (matrix == null) return;
+        int width = getWidth();
+        int height = getHeight();
+        float frozen = frozenWidth();
+        int firstRow = (int) (offsetY / rowHeight);
+        int lastRow = Math.min(sids.length - 1, (int) ((offsetY + height - rowHeight) / rowHeight));
+        int firstDay = 1 + (int) (offsetX / dayWidth);
+        int lastDay = Math.min(days, 1 + (int) ((offsetX + width - frozen) / dayWidth));
+
+        //status cells
+        canvas.save();
+        canvas.clipRect(frozen, rowHeight, width, height);
+        for (int row = firstRow; row <= lastRow; row++) {
+            float top = rowHeight + row * rowHeight - offsetY;
+            for (int day = firstDay; day <= lastDay; day++) {
+                float left = frozen + (day - 1) * dayWidth - offsetX;
+                String status = matrix.getStatus(sids[row], day);
+                if ("P".equals(status)) canvas.drawRect(left, top, left + dayWidth, top + rowHeight, presentPaint);
+                else if ("A".equals(status)) canvas.drawRect(left, top, left + dayWidth, top + rowHeight, absentPaint);
+                drawCentered(canvas, status != null ? status : "—", left, top, dayWidth, textPaint);
+            }
+            canvas.drawLine(frozen, top + rowHeight, width, top + rowHeight, linePaint);
+        }
+        for (int day = firstDay; day <= lastDay; day++) {
+            float left = frozen + (day - 1) * dayWidth - offsetX;
+            canvas.drawLine(left, rowHeight, left, height, linePaint);
+        }
+        canvas.restore();
+
+        //frozen roll and name columns
+        canvas.save();
+        canvas.clipRect(0, rowHeight, frozen, height);
+        canvas.drawRect(0, rowHeight, frozen, height, headerPaint);
+        for (int row = firstRow; row <= lastRow; row++) {
+            float top = rowHeight + row * rowHeight - offsetY;
+            canvas.drawText(rolls[row], padding, top + textOffset, textPaint);
+            if (shownNames[row] == null) {
+                shownNames[row] = TextUtils.ellipsize(names[row], textPaint, nameWidth - 2 * padding, TextUtils.TruncateAt.END).toString();
+            }
+            canvas.drawText(shownNames[row], rollWidth + padding, top + textOffset, textPaint);
+            canvas.drawLine(0, top + rowHeight, frozen, top + rowHeight, linePaint);
+        }
+        canvas.restore();
+
+        //frozen day header
+        canvas.save();
+        canvas.clipRect(frozen, 0, width, rowHeight);
+        canvas.drawRect(frozen, 0, width, rowHeight, headerPaint);
+        for (int day = firstDay; day <= lastDay; day++) {
+            float left = frozen + (day - 1) * dayWidth - offsetX;
+            drawCentered(canvas, DAYS[day], left, 0, dayWidth, boldPaint);
+        }
+        canvas.restore();
+
+        //corner
+        canvas.drawRect(0, 0, frozen, rowHeight, headerPaint);
+        canvas.drawText("Roll", padding, textOffset, boldPaint);
+        canvas.drawText("Name", rollWidth + padding, textOffset, boldPaint);
+        canvas.drawLine(0, rowHeight, width, rowHeight, linePaint);
+        canvas.drawLine(rollWidth, 0, rollWidth, height, linePaint);
+        canvas.drawLine(frozen, 0, frozen, height, linePaint);
+    }
+
+    private void drawCentered(Canvas canvas, String text, float left, float top, float cellWidth, Paint paint) {
+        canvas.drawText(text, left + (cellWidth - paint.measureText(text)) / 2, top + textOffset, paint);
+    }
+}
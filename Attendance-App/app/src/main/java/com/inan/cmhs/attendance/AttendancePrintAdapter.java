@@ -0,0 +1,150 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.print.PageRange;
+import android.print.PrintAttributes;
+import android.print.PrintDocumentAdapter;
+import android.print.PrintDocumentInfo;
+import android.print.PrintManager;
+import android.util.Log;
+
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+
+import java.io.FileOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Months of a class through the system print dialog. Every page holds at most ROWS_PER_PAGE students, so the page
+//count is known from a COUNT query and onWrite lays out only the pages the framework asks for, straight into its
+//file descriptor.
+class AttendancePrintAdapter extends PrintDocumentAdapter {
+    //fits an A4 landscape page with the header, names longer than the column would wrap and push rows off it
+    static final int ROWS_PER_PAGE = 20;
+    private static final PageSize PAGE_SIZE = PageSize.A4.rotate();
+
+    private final Context context;
+    private final DBHelper dbHelper;
+    private final long cid;
+    private final long[] months;
+    private final String name;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private int pagesPerMonth = -1;
+
+    //months are first days as epoch days
+    AttendancePrintAdapter(Context context, long cid, long[] months, String name) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = DBHelper.getInstance(context);
+        this.cid = cid;
+        this.months = months;
+        this.name = name;
+    }
+
+    static void print(Context context, long cid, long[] months, String name) {
+        PrintManager printManager = (PrintManager) context.getSystemService(Context.PRINT_SERVICE);
+        PrintAttributes attributes = new PrintAttributes.Builder()
+                .setMediaSize(PrintAttributes.MediaSize.ISO_A4.asLandscape())
+                .build();
+        printManager.print(name, new AttendancePrintAdapter(context, cid, months, name), attributes);
+    }
+
+    //the count runs on the executor like the writes, the framework is answered back on the main thread
+    @Override
+    public void onLayout(PrintAttributes oldAttributes, PrintAttributes newAttributes, final CancellationSignal cancellationSignal, final LayoutResultCallback callback, Bundle extras) {
+        if (cancellationSignal.isCanceled()) {
+            callback.onLayoutCancelled();
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                //the pages are always A4 landscape and the printer scales them, only a roster change moves the count
+                final int students = (int) dbHelper.countStudents(cid);
+                handler.post(() -> {
+                    if (cancellationSignal.isCanceled()) {
+                        callback.onLayoutCancelled();
+                        return;
+                    }
+                    int pages = Math.max(1, (students + ROWS_PER_PAGE - 1) / ROWS_PER_PAGE);
+                    boolean changed = pages != pagesPerMonth;
+                    pagesPerMonth = pages;
+                    PrintDocumentInfo info = new PrintDocumentInfo.Builder(name + ".pdf")
+                            .setContentType(PrintDocumentInfo.CONTENT_TYPE_DOCUMENT)
+                            .setPageCount(pagesPerMonth * months.length)
+                            .build();
+                    callback.onLayoutFinished(info, changed);
+                });
+            } catch (RuntimeException e) {
+                Log.e("AttendancePrint", "can't count the students of " + name, e);
+                handler.post(() -> callback.onLayoutFailed(e.getMessage()));
+            }
+        });
+    }
+
+    @Override
+    public void onWrite(final PageRange[] pages, final ParcelFileDescriptor destination, final CancellationSignal cancellationSignal, final WriteResultCallback callback) {
+        final int pagesPerMonth = this.pagesPerMonth;
+        executor.execute(() -> {
+            try {
+                boolean written = write(pages, pagesPerMonth, destination, cancellationSignal);
+                handler.post(() -> {
+                    if (written) callback.onWriteFinished(pages);
+                    else callback.onWriteCancelled();
+                });
+            } catch (Exception e) {
+                Log.e("AttendancePrint", "can't write " + name, e);
+                handler.post(() -> callback.onWriteFailed(e.getMessage()));
+            }
+        });
+    }
+
+    @Override
+    public void onFinish() {
+        executor.shutdown();
+    }
+
+    //false when cancelled between pages
+    private boolean write(PageRange[] pages, int pagesPerMonth, ParcelFileDescriptor destination, CancellationSignal cancellationSignal) {
+        ReportResources.loadLogo(context);
+        AttendanceReport report = new AttendanceReport(dbHelper);
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(new FileOutputStream(destination.getFileDescriptor()), ExportProfile.FAST_DRAFT.writerProperties()));
+        ReportResources resources = new ReportResources(pdfDocument, PAGE_SIZE);
+        Document document = new Document(pdfDocument, PAGE_SIZE);
+        document.setMargins(ReportResources.MARGIN + ReportResources.HEADER_HEIGHT + 8, ReportResources.MARGIN, ReportResources.MARGIN, ReportResources.MARGIN);
+        document.setFont(resources.regular);
+        MonthMatrix matrix = null;
+        int matrixMonth = -1;
+        boolean first = true;
+        try {
+            for (int page = 0; page < pagesPerMonth * months.length; page++) {
+                if (!requested(pages, page)) continue;
+                if (cancellationSignal.isCanceled()) return false;
+                int month = page / pagesPerMonth;
+                //pages come in order, so each month's matrix is read once
+                if (month != matrixMonth) {
+                    matrixMonth = month;
+                    matrix = dbHelper.getMonthMatrix(cid, EpochDays.year(months[month]), EpochDays.month(months[month]));
+                }
+                report.addPage(document, resources, cid, matrix, page % pagesPerMonth * ROWS_PER_PAGE, ROWS_PER_PAGE, !first);
+                first = false;
+            }
+        } finally {
+            document.close();
+        }
+        return true;
+    }
+
+    private static boolean requested(PageRange[] pages, int page) {
+        for (PageRange range : pages) {
+            if (range.equals(PageRange.ALL_PAGES) || (page >= range.getStart() && page <= range.getEnd())) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+package com.inan.cmhs.attendance;
+
+import android.database.Cursor;
+
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.property.AreaBreakType;
+import com.itextpdf.layout.property.TextAlignment;
+import com.itextpdf.layout.property.UnitValue;
+
+import java.io.OutputStream;
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+
+//Month attendance sheet as a PDF table, read straight from the database instead of the screen.
+//The table is a large table, every FLUSH_ROWS rows are laid out, written and dropped so memory doesn't grow with the class.
+public class AttendanceReport {
+    //rows held in memory before they go out to the writer
+    static final int FLUSH_ROWS = 100;
+    private static final float FONT_SIZE = 7;
+    private static final float ROLL_WIDTH = 28, NAME_WIDTH = 110, DAY_WIDTH = 16, TOTAL_WIDTH = 20;
+    private static final PageSize PAGE_SIZE = PageSize.A4.rotate();
+    private static final String[] MONTHS = new DateFormatSymbols(Locale.ENGLISH).getMonths();
+
+    //told after every flushed batch of rows, throwing from it stops the report
+    interface Progress {
+        void onRows(int rows);
+    }
+
+    private final DBHelper dbHelper;
+    private Progress progress;
+    private ExportProfile profile = ExportProfile.SHAREABLE;
+
+    AttendanceReport(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    void setProfile(ExportProfile profile) {
+        this.profile = profile;
+    }
+
+    //writes one month of a class to out and closes it, returns the number of student rows
+    public int writeMonth(long cid, int year, int month, OutputStream out) {
+        return writeMonths(cid, new long[]{EpochDays.of(year, month, 1)}, out);
+    }
+
+    //writes each month (first days as epoch days) of a class on its own pages, returns the number of student rows
+    public int writeMonths(long cid, long[] months, OutputStream out) {
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(out, profile.writerProperties()));
+        ReportResources resources = new ReportResources(pdfDocument, PAGE_SIZE);
+        Document document = new Document(pdfDocument, PAGE_SIZE);
+        document.setMargins(ReportResources.MARGIN + ReportResources.HEADER_HEIGHT + 8, ReportResources.MARGIN, ReportResources.MARGIN, ReportResources.MARGIN);
+        document.setFont(resources.regular);
+        int rows = 0;
+        try {
+            for (int i = 0; i < months.length; i++) {
+                rows += addMonth(document, resources, cid, EpochDays.year(months[i]), EpochDays.month(months[i]), i > 0);
+            }
+        } finally {
+            document.close();
+        }
+        return rows;
+    }
+
+    //newPage starts the month on a page of its own
+    int addMonth(Document document, ReportResources resources, long cid, int year, int month, boolean newPage) {
+        MonthMatrix matrix = dbHelper.getMonthMatrix(cid, year, month);
+        Table table = startTable(document, resources, cid, year, month, matrix.days, newPage);
+
+        int rows = 0;
+        Cursor cursor = dbHelper.queryStudents(cid);
+        try {
+            while (cursor.moveToNext()) {
+                addRow(table, cursor, matrix);
+                if (++rows % FLUSH_ROWS == 0) {
+                    table.flush();
+                    if (progress != null) progress.onRows(FLUSH_ROWS);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        table.complete();
+        if (progress != null) progress.onRows(rows % FLUSH_ROWS);
+        return rows;
+    }
+
+    //rows count students of the month starting at the offset-th as one page, count has to fit on a page, see AttendancePrintAdapter
+    int addPage(Document document, ReportResources resources, long cid, MonthMatrix matrix, int offset, int count, boolean newPage) {
+        Table table = startTable(document, resources, cid, matrix.year, matrix.month, matrix.days, newPage);
+        int rows = 0;
+        Cursor cursor = dbHelper.queryStudents(cid);
+        try {
+            if (cursor.moveToPosition(offset)) {
+                do {
+                    addRow(table, cursor, matrix);
+                } while (++rows < count && cursor.moveToNext());
+            }
+        } finally {
+            cursor.close();
+        }
+        table.complete();
+        return rows;
+    }
+
+    private Table startTable(Document document, ReportResources resources, long cid, int year, int month, int days, boolean newPage) {
+        ClassItems classItem = dbHelper.getClassItem(cid);
+        String title = MONTHS[month - 1] + " " + year;
+        if (classItem != null) title = classItem.getName() + " - " + classItem.getSection() + ", " + title;
+        //before the break so the month's first page already gets it
+        resources.setHeader(title);
+        if (newPage) document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
+
+        float[] widths = new float[days + 4];
+        widths[0] = ROLL_WIDTH;
+        widths[1] = NAME_WIDTH;
+        for (int day = 1; day <= days; day++) widths[day + 1] = DAY_WIDTH;
+        widths[days + 2] = TOTAL_WIDTH;
+        widths[days + 3] = TOTAL_WIDTH;
+        Table table = new Table(widths, true);
+        table.setWidth(UnitValue.createPercentValue(100));
+        table.setFontSize(FONT_SIZE);
+        //header cells repeat on every page the table runs onto
+        table.addHeaderCell(cell("Roll").setFont(resources.bold));
+        table.addHeaderCell(cell("Name").setFont(resources.bold));
+        for (int day = 1; day <= days; day++) table.addHeaderCell(cell(String.valueOf(day)).setFont(resources.bold));
+        table.addHeaderCell(cell("P").setFont(resources.bold));
+        table.addHeaderCell(cell("A").setFont(resources.bold));
+        //a large table has to be in the document before its rows are added
+        document.add(table);
+        return table;
+    }
+
+    //cursor is on a queryStudents row
+    private static void addRow(Table table, Cursor cursor, MonthMatrix matrix) {
+        long sid = cursor.getLong(0);
+        table.addCell(cell(String.valueOf(cursor.getInt(1))));
+        table.addCell(cell(cursor.getString(2)).setTextAlignment(TextAlignment.LEFT));
+        for (int day = 1; day <= matrix.days; day++) {
+            String status = matrix.getStatus(sid, day);
+            table.addCell(cell(status != null ? status : ""));
+        }
+        table.addCell(cell(String.valueOf(matrix.getPresentCount(sid))));
+        table.addCell(cell(String.valueOf(matrix.getAbsentCount(sid))));
+    }
+
+    private static Cell cell(String text) {
+        Cell cell = new Cell().add(new Paragraph(text));
+        cell.setPadding(1);
+        cell.setTextAlignment(TextAlignment.CENTER);
+        return cell;
+    }
+}
@@ -0,0 +1,193 @@
+package com.inan.cmhs.attendance;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Runs every DBHelper call off the main thread and hands the result back on it. Writes go through one thread in the
+//order they were asked for, reads share a pool so they carry on while a write runs.
+public class AttendanceRepository {
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public interface ErrorCallback {
+        void onError(Exception e);
+    }
+
+    private static final int READ_THREADS = 2;
+    private static AttendanceRepository instance;
+
+    private final DBHelper dbHelper;
+    private final ContentResolver contentResolver;
+    private final ExecutorService executor;
+    private final ExecutorService writer;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static synchronized AttendanceRepository getInstance(Context context) {
+        if (instance == null) instance = new AttendanceRepository(DBHelper.getInstance(context), context.getApplicationContext().getContentResolver());
+        return instance;
+    }
+
+    private AttendanceRepository(DBHelper dbHelper, ContentResolver contentResolver) {
+        this.dbHelper = dbHelper;
+        this.contentResolver = contentResolver;
+        executor = Executors.newFixedThreadPool(READ_THREADS, threads("attendance-db-"));
+        writer = Executors.newSingleThreadExecutor(threads("attendance-db-writer-"));
+    }
+
+    static ThreadFactory threads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, name + count.incrementAndGet());
+            }
+        };
+    }
+
+    //read task runs on the pool, callback (if any) runs on the main thread
+    <T> void execute(final Callable<T> task, @Nullable final Callback<T> callback) {
+        run(executor, task, callback, null);
+    }
+
+    //write task runs on the writer thread after every write asked for before it, a failure goes to onError
+    <T> void write(final Callable<T> task, @Nullable final Callback<T> callback, @Nullable final ErrorCallback onError) {
+        run(writer, task, callback, onError);
+    }
+
+    private <T> void run(ExecutorService executor, final Callable<T> task, @Nullable final Callback<T> callback, @Nullable final ErrorCallback onError) {
+        executor.execute(() -> {
+            try {
+                final T result = task.call();
+                if (callback != null) mainHandler.post(() -> callback.onResult(result));
+            } catch (final Exception e) {
+                Log.e("AttendanceRepository", "database task failed", e);
+                if (onError != null) mainHandler.post(() -> onError.onError(e));
+            }
+        });
+    }
+
+    void getClasses(Callback<ArrayList<ClassItems>> callback) {
+        execute(dbHelper::getClasses, callback);
+    }
+
+    void addClass(final String name, final String section, Callback<Long> callback, ErrorCallback onError) {
+        write(() -> dbHelper.addClass(name, section), callback, onError);
+    }
+
+    void editClass(final int cid, final String name, final String section, ErrorCallback onError) {
+        write(() -> dbHelper.editclass(cid, name, section), null, onError);
+    }
+
+    void removeClass(final int cid, ErrorCallback onError) {
+        write(() -> dbHelper.removeClass(cid), null, onError);
+    }
+
+    void getStudents(final long cid, Callback<ArrayList<StudentItems>> callback) {
+        execute(() -> dbHelper.getStudents(cid), callback);
+    }
+
+    void addStudent(final long cid, final int roll, final String name, Callback<Long> callback, ErrorCallback onError) {
+        write(() -> dbHelper.addStudent(cid, roll, name), callback, onError);
+    }
+
+    void editStudent(final long sid, final int roll, final String name, ErrorCallback onError) {
+        write(() -> dbHelper.editstudent(sid, roll, name), null, onError);
+    }
+
+    void removeStudent(final long sid, ErrorCallback onError) {
+        write(() -> dbHelper.removeStudent(sid), null, onError);
+    }
+
+    //roster CSV at uri into class cid, see RosterImporter
+    void importRoster(final long cid, final Uri uri, Callback<ImportResult> callback) {
+        write(() -> {
+            InputStream in = null;
+            try {
+                in = contentResolver.openInputStream(uri);
+                if (in == null) throw new IOException("can't open " + uri);
+                return new RosterImporter(dbHelper).importCsv(cid, in);
+            } catch (IOException | RuntimeException e) {
+                ImportResult result = new ImportResult();
+                result.error = e.getMessage();
+                return result;
+            } finally {
+                if (in != null) in.close();
+            }
+        }, callback, null);
+    }
+
+    void getDayStatuses(final long cid, final long day, Callback<LongSparseArray<String>> callback) {
+        execute(() -> dbHelper.getDayStatuses(cid, day), callback);
+    }
+
+    //statuses must not be changed by the caller after this, pass a copy
+    void saveDayStatuses(final long cid, final long day, final List<StudentItems> statuses, Callback<Integer> callback, ErrorCallback onError) {
+        write(() -> dbHelper.saveDayStatuses(cid, day, statuses), callback, onError);
+    }
+
+    void getMonths(final long cid, Callback<long[]> callback) {
+        execute(() -> dbHelper.getMonths(cid), callback);
+    }
+
+    void getMonthPercents(final long cid, final long[] months, Callback<int[]> callback) {
+        execute(() -> dbHelper.getMonthPercents(cid, months), callback);
+    }
+
+    //mismatched rows before the rebuild, the rollup is only rebuilt when there are any
+    void checkRollup(Callback<Long> callback, ErrorCallback onError) {
+        write(() -> {
+            long mismatched = dbHelper.checkRollup();
+            if (mismatched > 0) dbHelper.rebuildRollup();
+            return mismatched;
+        }, callback, onError);
+    }
+
+    void getDefaulters(final long from, final int threshold, Callback<ArrayList<Defaulter>> callback) {
+        execute(() -> dbHelper.getDefaulters(from, threshold), callback);
+    }
+
+    //null when the student has no marks in the class
+    void getStudentStats(final long cid, final long sid, Callback<AttendanceAnalytics.Stats> callback) {
+        execute(() -> AttendanceAnalytics.load(dbHelper, cid, sid).stats(sid), callback);
+    }
+
+    //{present, marked} of a student from day from up to but not including day to, see RangeIndex
+    void getRangeTotals(final long cid, final long sid, final long from, final long to, Callback<int[]> callback) {
+        execute(() -> RangeIndex.totals(dbHelper, cid, sid, from, to), callback);
+    }
+
+    //{present, marked} of a student's last n marked days
+    void getLastMarkedDays(final long cid, final long sid, final int n, Callback<int[]> callback) {
+        execute(() -> RangeIndex.lastMarkedDays(dbHelper, cid, sid, n), callback);
+    }
+
+    void searchStudents(final String text, final int limit, Callback<ArrayList<StudentMatch>> callback) {
+        execute(() -> dbHelper.searchStudents(text, limit), callback);
+    }
+
+    void getMonthMatrix(final long cid, final int year, final int month, Callback<MonthMatrix> callback) {
+        execute(() -> dbHelper.getMonthMatrix(cid, year, month), callback);
+    }
+}
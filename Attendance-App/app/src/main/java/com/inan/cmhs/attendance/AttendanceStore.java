@@ -0,0 +1,14 @@
+package com.inan.cmhs.attendance;
+
+import android.util.LongSparseArray;
+
+import java.util.List;
+
+//How a class's daily marks are kept, DBHelper keeps a row per day and MonthlyStatusStore a bitmask per month
+public interface AttendanceStore {
+    int saveDayStatuses(long cid, long day, List<StudentItems> statuses);
+
+    LongSparseArray<String> getDayStatuses(long cid, long day);
+
+    MonthMatrix getMonthMatrix(long cid, int year, int month);
+}
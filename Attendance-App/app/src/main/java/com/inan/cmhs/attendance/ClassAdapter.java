@@ -1,6 +1,5 @@
 package com.inan.cmhs.attendance;
 
-import android.content.Context;
 import android.view.ContextMenu;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -8,14 +7,24 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
+public class ClassAdapter extends ListAdapter<ClassItems, ClassAdapter.ClassViewHolder> {
 
-public class ClassAdapter extends RecyclerView.Adapter<ClassAdapter.ClassViewHolder> {
+    private static final DiffUtil.ItemCallback<ClassItems> DIFF = new DiffUtil.ItemCallback<ClassItems>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ClassItems oldItem, @NonNull ClassItems newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ClassItems oldItem, @NonNull ClassItems newItem) {
+            return oldItem.getName().equals(newItem.getName()) && oldItem.getSection().equals(newItem.getSection());
+        }
+    };
 
-    ArrayList<ClassItems> classItems;
-    Context context;
     private OnItemClickListener onItemClickListener;
 
     public void setOnItemClickListener(OnItemClickListener onItemClickListener) {
@@ -28,9 +37,9 @@ public class ClassAdapter extends RecyclerView.Adapter<ClassAdapter.ClassViewHol
 
 
 
-    public ClassAdapter(Context context, ArrayList<ClassItems> classItems) {
-        this.context=context;
-        this.classItems = classItems;
+    public ClassAdapter() {
+        super(DIFF);
+        setHasStableIds(true);
     }
 
     public static class ClassViewHolder extends RecyclerView.ViewHolder implements View.OnCreateContextMenuListener{
@@ -58,14 +67,14 @@ public class ClassAdapter extends RecyclerView.Adapter<ClassAdapter.ClassViewHol
     }
 
     @Override
-    public void onBindViewHolder(@NonNull ClassViewHolder holder, int position) {
-        holder.name.setText(classItems.get(position).getName());
-        holder.section.setText("Section: "+classItems.get(position).getSection());
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     @Override
-    public int getItemCount() {
-        return classItems.size();
+    public void onBindViewHolder(@NonNull ClassViewHolder holder, int position) {
+        holder.name.setText(getItem(position).getName());
+        holder.section.setText("Section: "+getItem(position).getSection());
     }
 
 
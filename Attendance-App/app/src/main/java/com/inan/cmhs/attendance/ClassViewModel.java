@@ -0,0 +1,102 @@
+package com.inan.cmhs.attendance;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+
+//Class list for MainActivity, kept across rotation and read again when MainActivity comes back to the front.
+//Changes publish a new list so ClassAdapter can diff it.
+public class ClassViewModel extends AndroidViewModel {
+    private final AttendanceRepository repository;
+    private final MutableLiveData<ArrayList<ClassItems>> classes = new MutableLiveData<>();
+    private boolean loading;
+
+    public ClassViewModel(@NonNull Application application) {
+        super(application);
+        repository = AttendanceRepository.getInstance(application);
+    }
+
+    LiveData<ArrayList<ClassItems>> getClasses() {
+        if (classes.getValue() == null && !loading) {
+            loading = true;
+            repository.getClasses(result -> {
+                loading = false;
+                classes.setValue(result);
+            });
+        }
+        return classes;
+    }
+
+    //other screens add classes too, a roster import creates the ones its rows name
+    void reloadClasses() {
+        if (loading) return;
+        loading = true;
+        repository.getClasses(result -> {
+            loading = false;
+            classes.setValue(result);
+        });
+    }
+
+    //a write that fails puts the list back as it was before it and goes to onError
+    void addClass(final String name, final String section, AttendanceRepository.ErrorCallback onError) {
+        repository.addClass(name, section, cid -> {
+            ArrayList<ClassItems> classItems = classes.getValue();
+            if (classItems == null) return;
+            if (cid == -1) {
+                onError.onError(new IllegalStateException(name + " " + section + " already exists"));
+                return;
+            }
+            ArrayList<ClassItems> changed = new ArrayList<>(classItems);
+            changed.add(new ClassItems(cid.intValue(), name, section));
+            classes.setValue(changed);
+        }, onError);
+    }
+
+    void editClass(int position, String name, String section, final AttendanceRepository.ErrorCallback onError) {
+        ArrayList<ClassItems> classItems = classes.getValue();
+        if (classItems == null) return;
+        ArrayList<ClassItems> changed = new ArrayList<>(classItems);
+        final ClassItems old = classItems.get(position);
+        ClassItems classItem = new ClassItems(old.getId(), name, section);
+        changed.set(position, classItem);
+        classes.setValue(changed);
+        repository.editClass(classItem.getId(), name, section, e -> {
+            restore(old, -1);
+            onError.onError(e);
+        });
+    }
+
+    void removeClass(final int position, final AttendanceRepository.ErrorCallback onError) {
+        ArrayList<ClassItems> classItems = classes.getValue();
+        if (classItems == null) return;
+        ArrayList<ClassItems> changed = new ArrayList<>(classItems);
+        final ClassItems classItem = changed.remove(position);
+        classes.setValue(changed);
+        repository.removeClass(classItem.getId(), e -> {
+            restore(classItem, position);
+            onError.onError(e);
+        });
+    }
+
+    //puts item back in place of the one with its id, or at position when it was removed
+    private void restore(ClassItems item, int position) {
+        ArrayList<ClassItems> classItems = classes.getValue();
+        if (classItems == null) return;
+        ArrayList<ClassItems> changed = new ArrayList<>(classItems);
+        for (int i = 0; i < changed.size(); i++) {
+            if (changed.get(i).getId() == item.getId()) {
+                changed.set(i, item);
+                classes.setValue(changed);
+                return;
+            }
+        }
+        if (position < 0) return;
+        changed.add(Math.min(position, changed.size()), item);
+        classes.setValue(changed);
+    }
+}
@@ -0,0 +1,224 @@
+package com.inan.cmhs.attendance;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+
+import static com.inan.cmhs.attendance.DBHelper.C_ID;
+import static com.inan.cmhs.attendance.DBHelper.ClassNameKey;
+import static com.inan.cmhs.attendance.DBHelper.ClassTableName;
+import static com.inan.cmhs.attendance.DBHelper.DateKey;
+import static com.inan.cmhs.attendance.DBHelper.RollKey;
+import static com.inan.cmhs.attendance.DBHelper.S_ID;
+import static com.inan.cmhs.attendance.DBHelper.S_ID_Status;
+import static com.inan.cmhs.attendance.DBHelper.SectionNameKey;
+import static com.inan.cmhs.attendance.DBHelper.StatusKey;
+import static com.inan.cmhs.attendance.DBHelper.StatusTableName;
+import static com.inan.cmhs.attendance.DBHelper.StudentNameKey;
+import static com.inan.cmhs.attendance.DBHelper.StudentTableName;
+
+//Status_Table as CSV or TSV, one line per mark: Date,Class,Section,Roll,Name,Status.
+//Rows go from the cursor into one reused direct buffer, text is copied out with copyStringToBuffer and numbers
+//are written digit by digit, so no String is made per cell and memory stays the same for any number of rows.
+class CsvExporter {
+    static final char CSV = ',';
+    static final char TSV = '\t';
+    //rows between progress calls
+    private static final int PROGRESS_ROWS = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DBHelper dbHelper;
+    private final char separator;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharArrayBuffer text = new CharArrayBuffer(64);
+    private final byte[] date = new byte[10];
+    private long dateDay = Long.MIN_VALUE;
+    private WritableByteChannel channel;
+
+    CsvExporter(DBHelper dbHelper, char separator) {
+        this.dbHelper = dbHelper;
+        this.separator = separator;
+    }
+
+    //cid < 0 is every class, from/to are epoch days with to excluded, Long.MIN_VALUE/MAX_VALUE for no limit
+    int countRows(long cid, long from, long to) {
+        ArrayList<String> args = new ArrayList<>();
+        String where = where(cid, from, to, args);
+        return (int) DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), StatusTableName, where, args.toArray(new String[0]));
+    }
+
+    //writes the header and every matching mark to out and closes it, returns the number of rows
+    long write(long cid, long from, long to, OutputStream out, AttendanceReport.Progress progress) throws IOException {
+        ArrayList<String> args = new ArrayList<>();
+        String where = where(cid, from, to, args);
+        //ordered the way Status_Class_Date_Index already is, so sqlite streams it without sorting
+        String sql = "SELECT " + StatusTableName + "." + DateKey + ", " + ClassNameKey + ", " + SectionNameKey + ", " + RollKey + ", " + StudentNameKey + ", " + StatusKey
+                + " FROM " + StatusTableName
+                + " JOIN " + StudentTableName + " ON " + StudentTableName + "." + S_ID + " = " + StatusTableName + "." + S_ID_Status
+                + " JOIN " + ClassTableName + " ON " + ClassTableName + "." + C_ID + " = " + StatusTableName + "." + C_ID
+                + (where != null ? " WHERE " + where : "")
+                + " ORDER BY " + StatusTableName + "." + C_ID + ", " + StatusTableName + "." + DateKey + ", " + StatusTableName + "." + S_ID_Status;
+        SQLiteDatabase sqLiteDatabase = dbHelper.getReadableDatabase();
+        channel = out instanceof FileOutputStream ? ((FileOutputStream) out).getChannel() : Channels.newChannel(out);
+        buffer.clear();
+        long rows = 0;
+        Cursor cursor = sqLiteDatabase.rawQuery(sql, args.toArray(new String[0]));
+        try {
+            ascii("Date");
+            separator();
+            ascii("Class");
+            separator();
+            ascii("Section");
+            separator();
+            ascii("Roll");
+            separator();
+            ascii("Name");
+            separator();
+            ascii("Status");
+            newLine();
+            while (cursor.moveToNext()) {
+                date(cursor.getLong(0));
+                separator();
+                text(cursor, 1);
+                separator();
+                text(cursor, 2);
+                separator();
+                number(cursor.getLong(3));
+                separator();
+                text(cursor, 4);
+                separator();
+                text(cursor, 5);
+                newLine();
+                if (++rows % PROGRESS_ROWS == 0 && progress != null) progress.onRows(PROGRESS_ROWS);
+            }
+            drain();
+            if (progress != null) progress.onRows((int) (rows % PROGRESS_ROWS));
+        } finally {
+            cursor.close();
+            channel.close();
+            channel = null;
+        }
+        return rows;
+    }
+
+    private static String where(long cid, long from, long to, ArrayList<String> args) {
+        StringBuilder where = new StringBuilder();
+        if (cid >= 0) {
+            where.append(StatusTableName).append(".").append(C_ID).append(" = ?");
+            args.add(String.valueOf(cid));
+        }
+        if (from != Long.MIN_VALUE) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append(DateKey).append(" >= ?");
+            args.add(String.valueOf(from));
+        }
+        if (to != Long.MAX_VALUE) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append(DateKey).append(" < ?");
+            args.add(String.valueOf(to));
+        }
+        return where.length() > 0 ? where.toString() : null;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) drain();
+    }
+
+    private void separator() throws IOException {
+        ensure(1);
+        buffer.put((byte) separator);
+    }
+
+    private void newLine() throws IOException {
+        ensure(2);
+        buffer.put((byte) '\r').put((byte) '\n');
+    }
+
+    private void ascii(String value) throws IOException {
+        ensure(value.length());
+        for (int i = 0; i < value.length(); i++) buffer.put((byte) value.charAt(i));
+    }
+
+    private void number(long value) throws IOException {
+        ensure(20);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) divisor *= 10;
+        for (; divisor > 0; divisor /= 10) buffer.put((byte) ('0' + value / divisor % 10));
+    }
+
+    //yyyy-MM-dd, rows come in date order within a class so the digits are mostly reused
+    private void date(long day) throws IOException {
+        if (day != dateDay) {
+            dateDay = day;
+            digits(EpochDays.year(day), 0, 4);
+            date[4] = '-';
+            digits(EpochDays.month(day), 5, 2);
+            date[7] = '-';
+            digits(EpochDays.dayOfMonth(day), 8, 2);
+        }
+        ensure(date.length);
+        buffer.put(date);
+    }
+
+    private void digits(int value, int at, int count) {
+        for (int i = at + count - 1; i >= at; i--, value /= 10) date[i] = (byte) ('0' + value % 10);
+    }
+
+    //UTF-8 straight from the cursor's chars, quoted for CSV when needed, tabs and line breaks blanked for TSV
+    private void text(Cursor cursor, int column) throws IOException {
+        cursor.copyStringToBuffer(column, text);
+        char[] chars = text.data;
+        int length = text.sizeCopied;
+        boolean quote = false;
+        if (separator == CSV) {
+            for (int i = 0; i < length && !quote; i++) {
+                char c = chars[i];
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+        }
+        if (quote) {
+            ensure(1);
+            buffer.put((byte) '"');
+        }
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            ensure(4);
+            if (c < 0x80) {
+                if (quote && c == '"') buffer.put((byte) '"');
+                else if (separator == TSV && (c == '\t' || c == '\n' || c == '\r')) c = ' ';
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                int codePoint = Character.toCodePoint(c, chars[++i]);
+                buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        if (quote) {
+            ensure(1);
+            buffer.put((byte) '"');
+        }
+    }
+}
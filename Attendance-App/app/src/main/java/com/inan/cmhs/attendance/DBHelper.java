@@ -1,19 +1,32 @@
 package com.inan.cmhs.attendance;
 
-import android.annotation.SuppressLint;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.SQLException;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
+import android.util.LongSparseArray;
 
 import androidx.annotation.Nullable;
 
-public class DBHelper extends SQLiteOpenHelper {
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DBHelper extends SQLiteOpenHelper implements AttendanceStore {
     //version
-    public static final int VERSION = 1;
+    //2: Date_Key holds epoch days instead of "dd.MM.yyyy" text
+    //3: one status row per student per day
+    //4: Status_Month_Table for MonthlyStatusStore
+    //5: Report_Version and its triggers for ReportCache
+    //6: Status_Rollup and its triggers
+    //7: Student_Search full text index and its triggers
+    //8: Status_Month_Table dropped, nothing kept it in step with Status_Table, MonthlyStatusStore makes it when it's used
+    //9: Report_Version keeps a roster row per class so months without marks see student changes
+    public static final int VERSION = 9;
     //CLASS TABLE
     public static final String ClassTableName="Class_Table";
     public static final String C_ID="_CID";
@@ -42,14 +55,146 @@ public class DBHelper extends SQLiteOpenHelper {
     public static final String DateKey = "Date_Key";
     public static final String StatusKey = "Status_Key";
 
-    public static final String Create_Status_Table = "CREATE TABLE "+StatusTableName+"("+ID+" INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"+S_ID_Status+" INTEGER NOT NULL,"+C_ID+" INTEGER NOT NULL,"+DateKey+" DATE NOT NULL,"+StatusKey+" TEXT NOT NULL,"+"UNIQUE (" + S_ID_Status + " ," + DateKey + " ," + StatusKey + " )," + " FOREIGN KEY ("+S_ID+") REFERENCES " + StudentTableName + "("+S_ID+"), FOREIGN KEY ("+C_ID+") REFERENCES " + ClassTableName + "("+C_ID+")" + "  );";
+    public static final String Create_Status_Table = "CREATE TABLE "+StatusTableName+"("+ID+" INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"+S_ID_Status+" INTEGER NOT NULL,"+C_ID+" INTEGER NOT NULL,"+DateKey+" INTEGER NOT NULL,"+StatusKey+" TEXT NOT NULL,"+"UNIQUE (" + S_ID_Status + " ," + DateKey + " )," + " FOREIGN KEY ("+S_ID+") REFERENCES " + StudentTableName + "("+S_ID+"), FOREIGN KEY ("+C_ID+") REFERENCES " + ClassTableName + "("+C_ID+")" + "  );";
+
+    //Status_Table as it was at version 2, only used by upgradeToV2
+    private static final String Create_Status_Table_V2 = "CREATE TABLE "+StatusTableName+"("+ID+" INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"+S_ID_Status+" INTEGER NOT NULL,"+C_ID+" INTEGER NOT NULL,"+DateKey+" INTEGER NOT NULL,"+StatusKey+" TEXT NOT NULL,"+"UNIQUE (" + S_ID_Status + " ," + DateKey + " ," + StatusKey + " )," + " FOREIGN KEY ("+S_ID+") REFERENCES " + StudentTableName + "("+S_ID+"), FOREIGN KEY ("+C_ID+") REFERENCES " + ClassTableName + "("+C_ID+")" + "  );";
+    public static final String Create_Status_Index = "CREATE INDEX Status_Class_Date_Index ON "+StatusTableName+"("+C_ID+","+DateKey+","+S_ID_Status+");";
+    //rows copied per round trip while migrating Status_Table
+    private static final int MIGRATION_BATCH = 500;
 
     public static final String Delete_Status_Table="DROP TABLE IF EXISTS "+StatusTableName;
     public static final String Get_Status_Table="SELECT * FROM "+StatusTableName;
+    //STATUS MONTH TABLE, bit n of a mask is day n+1 of the month starting at Month_Key
+    public static final String StatusMonthTableName="Status_Month_Table";
+    public static final String MonthKey = "Month_Key";
+    public static final String PresentMaskKey = "Present_Mask";
+    public static final String AbsentMaskKey = "Absent_Mask";
+
+    public static final String Create_Status_Month_Table = "CREATE TABLE IF NOT EXISTS "+StatusMonthTableName+"("+S_ID_Status+" INTEGER NOT NULL,"+C_ID+" INTEGER NOT NULL,"+MonthKey+" INTEGER NOT NULL,"+PresentMaskKey+" INTEGER NOT NULL DEFAULT 0,"+AbsentMaskKey+" INTEGER NOT NULL DEFAULT 0,"+"PRIMARY KEY (" + S_ID_Status + "," + MonthKey + "));";
+    public static final String Delete_Status_Month_Table = "DROP TABLE IF EXISTS "+StatusMonthTableName;
+    public static final String Create_Status_Month_Index = "CREATE INDEX IF NOT EXISTS Status_Month_Class_Index ON "+StatusMonthTableName+"("+C_ID+","+MonthKey+");";
+    //REPORT VERSION TABLE, one counter per class-month bumped by triggers whenever something its report shows changes
+    public static final String ReportVersionTableName="Report_Version";
+    public static final String VersionKey = "Version";
+
+    //the row counting a class's roster changes, -1 is never the first day of a month
+    static final long RosterMonth = -1;
+
+    public static final String Create_Report_Version_Table = "CREATE TABLE "+ReportVersionTableName+"("+C_ID+" INTEGER NOT NULL,"+MonthKey+" INTEGER NOT NULL,"+VersionKey+" INTEGER NOT NULL DEFAULT 0,"+"PRIMARY KEY (" + C_ID + "," + MonthKey + "));";
+    //a status row touches its own month, a student or class row touches every month of the class and its roster row
+    public static final String[] Create_Report_Version_Triggers = {
+            "CREATE TRIGGER Status_Version_Insert AFTER INSERT ON "+StatusTableName+" BEGIN "+bumpMonth("NEW")+" END;",
+            "CREATE TRIGGER Status_Version_Update AFTER UPDATE ON "+StatusTableName+" BEGIN "+bumpMonth("OLD")+bumpMonth("NEW")+" END;",
+            "CREATE TRIGGER Status_Version_Delete AFTER DELETE ON "+StatusTableName+" BEGIN "+bumpMonth("OLD")+" END;"
+    };
+    public static final String[] Create_Roster_Version_Triggers = {
+            "CREATE TRIGGER Student_Version_Insert AFTER INSERT ON "+StudentTableName+" BEGIN "+bumpClass("NEW")+" END;",
+            "CREATE TRIGGER Student_Version_Update AFTER UPDATE ON "+StudentTableName+" BEGIN "+bumpClass("OLD")+bumpClass("NEW")+" END;",
+            "CREATE TRIGGER Student_Version_Delete AFTER DELETE ON "+StudentTableName+" BEGIN "+bumpClass("OLD")+" END;",
+            "CREATE TRIGGER Class_Version_Update AFTER UPDATE ON "+ClassTableName+" BEGIN "+bumpClass("NEW")+" END;"
+    };
+    //STATUS ROLLUP TABLE, per student per month counts kept by triggers so summaries read one row per student
+    public static final String RollupTableName="Status_Rollup";
+    public static final String PresentCountKey = "Present_Count";
+    public static final String AbsentCountKey = "Absent_Count";
+    public static final String MarkedDaysKey = "Marked_Days";
+
+    public static final String Create_Rollup_Table = "CREATE TABLE "+RollupTableName+"("+S_ID_Status+" INTEGER NOT NULL,"+C_ID+" INTEGER NOT NULL,"+MonthKey+" INTEGER NOT NULL,"+PresentCountKey+" INTEGER NOT NULL DEFAULT 0,"+AbsentCountKey+" INTEGER NOT NULL DEFAULT 0,"+MarkedDaysKey+" INTEGER NOT NULL DEFAULT 0,"+"PRIMARY KEY (" + S_ID_Status + "," + MonthKey + "));";
+    public static final String Create_Rollup_Index = "CREATE INDEX Status_Rollup_Class_Index ON "+RollupTableName+"("+C_ID+","+MonthKey+");";
+    //INSERT OR REPLACE only runs the delete trigger with recursive_triggers on, see onConfigure
+    public static final String[] Create_Rollup_Triggers = {
+            "CREATE TRIGGER Status_Rollup_Insert AFTER INSERT ON "+StatusTableName+" BEGIN "+rollup("NEW", 1)+" END;",
+            "CREATE TRIGGER Status_Rollup_Update AFTER UPDATE ON "+StatusTableName+" BEGIN "+rollup("OLD", -1)+rollup("NEW", 1)+" END;",
+            "CREATE TRIGGER Status_Rollup_Delete AFTER DELETE ON "+StatusTableName+" BEGIN "+rollup("OLD", -1)+" END;"
+    };
+    //STUDENT SEARCH TABLE, FTS4 over name, roll, class and section with docid = _SID, 2 and 3 letter prefixes indexed
+    //so typing stays fast. The simple tokenizer, unicode61 needs sqlite 3.7.13 (API 21)
+    public static final String SearchTableName="Student_Search";
+    public static final String SearchClassKey = "Class";
+    public static final String SearchSectionKey = "Section";
+    public static final String SearchRollKey = "Roll";
+
+    public static final String Create_Search_Table = "CREATE VIRTUAL TABLE "+SearchTableName+" USING fts4("+StudentNameKey+","+SearchRollKey+","+SearchClassKey+","+SearchSectionKey+", prefix=\"2,3\");";
+    private static final String SEARCH_ROW = "INSERT INTO " + SearchTableName + "(docid," + StudentNameKey + "," + SearchRollKey + "," + SearchClassKey + "," + SearchSectionKey + ") ";
+    public static final String[] Create_Search_Triggers = {
+            "CREATE TRIGGER Student_Search_Insert AFTER INSERT ON "+StudentTableName+" BEGIN "+searchRow("NEW")+" END;",
+            "CREATE TRIGGER Student_Search_Update AFTER UPDATE ON "+StudentTableName+" BEGIN DELETE FROM "+SearchTableName+" WHERE docid = OLD."+S_ID+"; "+searchRow("NEW")+" END;",
+            "CREATE TRIGGER Student_Search_Delete AFTER DELETE ON "+StudentTableName+" BEGIN DELETE FROM "+SearchTableName+" WHERE docid = OLD."+S_ID+"; END;",
+            "CREATE TRIGGER Class_Search_Update AFTER UPDATE ON "+ClassTableName+" BEGIN UPDATE "+SearchTableName+" SET "+SearchClassKey+" = NEW."+ClassNameKey+", "+SearchSectionKey+" = NEW."+SectionNameKey
+                    +" WHERE docid IN (SELECT "+S_ID+" FROM "+StudentTableName+" WHERE "+C_ID_Student+" = NEW."+C_ID+"); END;",
+            "CREATE TRIGGER Class_Search_Delete AFTER DELETE ON "+ClassTableName+" BEGIN DELETE FROM "+SearchTableName
+                    +" WHERE docid IN (SELECT "+S_ID+" FROM "+StudentTableName+" WHERE "+C_ID_Student+" = OLD."+C_ID+"); END;"
+    };
+    //Status_Rollup as it should be, counted from Status_Table
+    private static final String ROLLUP_FROM_STATUS = "SELECT " + S_ID_Status + ", MIN(" + C_ID + ") AS cid, " + monthStartSql(DateKey) + " AS month, "
+            + "SUM(" + StatusKey + " = 'P') AS present, SUM(" + StatusKey + " <> 'P') AS absent, COUNT(*) AS marked FROM " + StatusTableName + " GROUP BY " + S_ID_Status + ", month";
+    //page cache of the writer connection in KiB, passed to sqlite as a negative cache_size
+    private static final int CACHE_SIZE_KB = 4096;
     //Start of query
 
-    public DBHelper(@Nullable Context context) {
-        super(context,"CMHS.db",null, VERSION);
+    private static DBHelper instance;
+
+    //epoch day of the first of the month holding the epoch day in dateColumn
+    static String monthStartSql(String dateColumn) {
+        return dateColumn + " - CAST(strftime('%d', " + dateColumn + " * 86400, 'unixepoch') AS INTEGER) + 1";
+    }
+
+    private static String bumpMonth(String row) {
+        String month = monthStartSql(row + "." + DateKey);
+        return "INSERT OR IGNORE INTO " + ReportVersionTableName + "(" + C_ID + "," + MonthKey + ") VALUES (" + row + "." + C_ID + ", " + month + "); "
+                + "UPDATE " + ReportVersionTableName + " SET " + VersionKey + " = " + VersionKey + " + 1 WHERE " + C_ID + " = " + row + "." + C_ID + " AND " + MonthKey + " = " + month + "; ";
+    }
+
+    //adds sign times the row to its student-month, a month left with nothing marked is removed
+    private static String rollup(String row, int sign) {
+        String month = monthStartSql(row + "." + DateKey);
+        String where = " WHERE " + S_ID_Status + " = " + row + "." + S_ID_Status + " AND " + MonthKey + " = " + month;
+        String sql = "";
+        if (sign > 0) sql += "INSERT OR IGNORE INTO " + RollupTableName + "(" + S_ID_Status + "," + C_ID + "," + MonthKey + ") VALUES (" + row + "." + S_ID_Status + ", " + row + "." + C_ID + ", " + month + "); ";
+        sql += "UPDATE " + RollupTableName + " SET "
+                + PresentCountKey + " = " + PresentCountKey + " + " + sign + " * (" + row + "." + StatusKey + " = 'P'), "
+                + AbsentCountKey + " = " + AbsentCountKey + " + " + sign + " * (" + row + "." + StatusKey + " <> 'P'), "
+                + MarkedDaysKey + " = " + MarkedDaysKey + " + " + sign + where + "; ";
+        if (sign < 0) sql += "DELETE FROM " + RollupTableName + where + " AND " + MarkedDaysKey + " <= 0; ";
+        return sql;
+    }
+
+    private static String searchRow(String row) {
+        return SEARCH_ROW + "SELECT " + row + "." + S_ID + ", " + row + "." + StudentNameKey + ", " + row + "." + RollKey + ", " + ClassNameKey + ", " + SectionNameKey
+                + " FROM " + ClassTableName + " WHERE " + C_ID + " = " + row + "." + C_ID_Student + "; ";
+    }
+
+    private static String bumpClass(String row) {
+        return "INSERT OR IGNORE INTO " + ReportVersionTableName + "(" + C_ID + "," + MonthKey + ") VALUES (" + row + "." + C_ID + ", " + RosterMonth + "); "
+                + "UPDATE " + ReportVersionTableName + " SET " + VersionKey + " = " + VersionKey + " + 1 WHERE " + C_ID + " = " + row + "." + C_ID + "; ";
+    }
+
+    //one helper for the whole process so every screen shares the same connection pool
+    public static synchronized DBHelper getInstance(Context context) {
+        if (instance == null) instance = new DBHelper(context.getApplicationContext());
+        return instance;
+    }
+
+    private DBHelper(@Nullable Context context) {
+        this(context,"CMHS.db");
+    }
+
+    DBHelper(@Nullable Context context, @Nullable String name) {
+        super(context,name,null, VERSION);
+        //readers keep going on their own connections while a save is being written
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+        super.onConfigure(sqLiteDatabase);
+        //with WAL a commit only needs the log synced, not the database file
+        sqLiteDatabase.execSQL("PRAGMA synchronous = NORMAL");
+        sqLiteDatabase.execSQL("PRAGMA cache_size = -" + CACHE_SIZE_KB);
+        sqLiteDatabase.setMaxSqlCacheSize(50);
+        //so the row INSERT OR REPLACE drops runs the delete triggers and Status_Rollup doesn't count a day twice
+        sqLiteDatabase.execSQL("PRAGMA recursive_triggers = ON");
     }
 
     @Override
@@ -57,18 +202,136 @@ public class DBHelper extends SQLiteOpenHelper {
         sqLiteDatabase.execSQL(Create_Class_Table);
         sqLiteDatabase.execSQL(Create_Student_Table);
         sqLiteDatabase.execSQL(Create_Status_Table);
+        sqLiteDatabase.execSQL(Create_Status_Index);
+        createReportVersions(sqLiteDatabase);
+        createRollup(sqLiteDatabase);
+        createSearch(sqLiteDatabase);
     }
 
+    //onUpgrade already runs inside a transaction, a failed step leaves the old schema untouched
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
-        try{
-            sqLiteDatabase.execSQL(Delete_Class_Table);
-            sqLiteDatabase.execSQL(Delete_Student_Table);
-            sqLiteDatabase.execSQL(Delete_Status_Table);
-        }catch (SQLException e){
-            e.printStackTrace();
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        if (oldVersion < 2) upgradeToV2(sqLiteDatabase);
+        if (oldVersion < 3) upgradeToV3(sqLiteDatabase);
+        if (oldVersion < 5) createReportVersions(sqLiteDatabase);
+        if (oldVersion < 6) createRollup(sqLiteDatabase);
+        if (oldVersion < 7) createSearch(sqLiteDatabase);
+        if (oldVersion < 8) sqLiteDatabase.execSQL(Delete_Status_Month_Table);
+        if (oldVersion >= 5 && oldVersion < 9) upgradeReportVersionsToV9(sqLiteDatabase);
+    }
+
+    private void createSearch(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(Create_Search_Table);
+        for (String trigger : Create_Search_Triggers) sqLiteDatabase.execSQL(trigger);
+        sqLiteDatabase.execSQL(SEARCH_ROW + "SELECT " + S_ID + ", " + StudentNameKey + ", " + RollKey + ", " + ClassNameKey + ", " + SectionNameKey
+                + " FROM " + StudentTableName + " JOIN " + ClassTableName + " ON " + ClassTableName + "." + C_ID + " = " + StudentTableName + "." + C_ID_Student);
+    }
+
+    private void createRollup(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(Create_Rollup_Table);
+        sqLiteDatabase.execSQL(Create_Rollup_Index);
+        for (String trigger : Create_Rollup_Triggers) sqLiteDatabase.execSQL(trigger);
+        fillRollup(sqLiteDatabase);
+    }
+
+    private static void fillRollup(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("INSERT INTO " + RollupTableName + "(" + S_ID_Status + "," + C_ID + "," + MonthKey + "," + PresentCountKey + "," + AbsentCountKey + "," + MarkedDaysKey + ") " + ROLLUP_FROM_STATUS);
+    }
+
+    //recounts Status_Rollup from Status_Table, for when checkRollup finds it off
+    void rebuildRollup(){
+        SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+        sqLiteDatabase.beginTransactionNonExclusive();
+        try {
+            sqLiteDatabase.delete(RollupTableName, null, null);
+            fillRollup(sqLiteDatabase);
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
         }
     }
+
+    //student-months where Status_Rollup and a fresh count from Status_Table disagree, 0 when it's consistent
+    long checkRollup(){
+        String columns = S_ID_Status + ", " + MonthKey + ", " + PresentCountKey + ", " + AbsentCountKey + ", " + MarkedDaysKey;
+        String expected = "SELECT " + S_ID_Status + ", month, present, absent, marked FROM (" + ROLLUP_FROM_STATUS + ")";
+        String actual = "SELECT " + columns + " FROM " + RollupTableName;
+        //compound selects can't be bracketed, so each direction is counted on its own
+        return DatabaseUtils.longForQuery(this.getReadableDatabase(),
+                "SELECT (SELECT COUNT(*) FROM (" + expected + " EXCEPT " + actual + ")) + (SELECT COUNT(*) FROM (" + actual + " EXCEPT " + expected + "))", null);
+    }
+
+    //every month that already has marks gets a row, a student change has to find it to bump it
+    private void createReportVersions(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(Create_Report_Version_Table);
+        sqLiteDatabase.execSQL("INSERT INTO " + ReportVersionTableName + "(" + C_ID + "," + MonthKey + ") SELECT DISTINCT " + C_ID + ", " + monthStartSql(DateKey) + " FROM " + StatusTableName);
+        for (String trigger : Create_Report_Version_Triggers) sqLiteDatabase.execSQL(trigger);
+        for (String trigger : Create_Roster_Version_Triggers) sqLiteDatabase.execSQL(trigger);
+    }
+
+    //the roster rows start at 1, a month cached at 0 before this may have missed a student change
+    private void upgradeReportVersionsToV9(SQLiteDatabase sqLiteDatabase) {
+        for (String trigger : new String[]{"Student_Version_Insert", "Student_Version_Update", "Student_Version_Delete", "Class_Version_Update"}) {
+            sqLiteDatabase.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+        }
+        for (String trigger : Create_Roster_Version_Triggers) sqLiteDatabase.execSQL(trigger);
+        sqLiteDatabase.execSQL("INSERT INTO " + ReportVersionTableName + "(" + C_ID + "," + MonthKey + "," + VersionKey + ") SELECT " + C_ID + ", " + RosterMonth + ", 1 FROM " + ClassTableName);
+    }
+
+    private void upgradeToV2(SQLiteDatabase sqLiteDatabase) {
+        String oldTable = StatusTableName + "_v1";
+        sqLiteDatabase.execSQL("DROP INDEX IF EXISTS Status_Class_Date_Index");
+        sqLiteDatabase.execSQL("ALTER TABLE " + StatusTableName + " RENAME TO " + oldTable);
+        sqLiteDatabase.execSQL(Create_Status_Table_V2);
+        sqLiteDatabase.execSQL(Create_Status_Index);
+        SQLiteStatement insert = sqLiteDatabase.compileStatement("INSERT INTO " + StatusTableName + "(" + ID + "," + S_ID_Status + "," + C_ID + "," + DateKey + "," + StatusKey + ") VALUES (?,?,?,?,?)");
+        long lastId = -1;
+        int unreadable = 0;
+        try {
+            while (true) {
+                Cursor cursor = sqLiteDatabase.query(oldTable, new String[]{ID, S_ID_Status, C_ID, DateKey, StatusKey}, ID + " > ?", new String[]{String.valueOf(lastId)}, null, null, ID, String.valueOf(MIGRATION_BATCH));
+                int rows = cursor.getCount();
+                try {
+                    while (cursor.moveToNext()) {
+                        lastId = cursor.getLong(0);
+                        long day = EpochDays.parse(cursor.getString(3));
+                        if (day == -1) {
+                            unreadable++;
+                            continue;
+                        }
+                        insert.bindLong(1, lastId);
+                        insert.bindLong(2, cursor.getLong(1));
+                        insert.bindLong(3, cursor.getLong(2));
+                        insert.bindLong(4, day);
+                        insert.bindString(5, cursor.getString(4));
+                        insert.executeInsert();
+                    }
+                } finally {
+                    cursor.close();
+                }
+                if (rows < MIGRATION_BATCH) break;
+            }
+        } finally {
+            insert.close();
+        }
+        //keep the old rows around rather than lose anything we could not convert
+        if (unreadable == 0) sqLiteDatabase.execSQL("DROP TABLE " + oldTable);
+        else Log.w("DBHelper", unreadable + " status rows kept in " + oldTable + ", their dates could not be read");
+    }
+
+    //the unique key moves from (_SID, Date_Key, Status_Key) to (_SID, Date_Key)
+    //a day marked both "P" and "A" keeps whichever row was written last
+    private void upgradeToV3(SQLiteDatabase sqLiteDatabase) {
+        String oldTable = StatusTableName + "_v2";
+        String columns = ID + "," + S_ID_Status + "," + C_ID + "," + DateKey + "," + StatusKey;
+        sqLiteDatabase.execSQL("DROP INDEX IF EXISTS Status_Class_Date_Index");
+        sqLiteDatabase.execSQL("ALTER TABLE " + StatusTableName + " RENAME TO " + oldTable);
+        sqLiteDatabase.execSQL(Create_Status_Table);
+        sqLiteDatabase.execSQL("INSERT INTO " + StatusTableName + "(" + columns + ") SELECT " + columns + " FROM " + oldTable
+                + " WHERE " + ID + " IN (SELECT MAX(" + ID + ") FROM " + oldTable + " GROUP BY " + S_ID_Status + "," + DateKey + ")");
+        sqLiteDatabase.execSQL("DROP TABLE " + oldTable);
+        sqLiteDatabase.execSQL(Create_Status_Index);
+    }
     long addClass(String name,String section){
         SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
         ContentValues values = new ContentValues();
@@ -88,13 +351,25 @@ public class DBHelper extends SQLiteOpenHelper {
         return sqLiteDatabase.update(ClassTableName,values,C_ID+"=?",new String[]{String.valueOf(pos)});
 
     }
-    Cursor cursor(){
+    ArrayList<ClassItems> getClasses(){
         SQLiteDatabase sqLiteDatabase = this.getReadableDatabase();
-        return sqLiteDatabase.rawQuery(Get_Class_Table,null);
+        Cursor cursor = sqLiteDatabase.query(ClassTableName,new String[]{C_ID,ClassNameKey,SectionNameKey},null,null,null,null,null);
+        ArrayList<ClassItems> classItems = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                classItems.add(new ClassItems(cursor.getInt(0), cursor.getString(1), cursor.getString(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return classItems;
     }
     long removeClass(int cid){
         SQLiteDatabase sqLiteDatabase=this.getWritableDatabase();
-        return sqLiteDatabase.delete(ClassTableName,C_ID+"=?",new String[]{String.valueOf(cid)});
+        RangeIndex.invalidate(cid);
+        int removed = sqLiteDatabase.delete(ClassTableName,C_ID+"=?",new String[]{String.valueOf(cid)});
+        RosterCache.invalidate(cid);
+        return removed;
     }
     long addStudent(long cid,int roll,String studentName){
         SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
@@ -102,7 +377,9 @@ public class DBHelper extends SQLiteOpenHelper {
         values.put(C_ID_Student,cid);
         values.put(RollKey, roll);
         values.put(StudentNameKey,studentName);
-        return sqLiteDatabase.insert(StudentTableName, null, values);
+        long sid = sqLiteDatabase.insert(StudentTableName, null, values);
+        if (sid != -1) RosterCache.invalidate(cid);
+        return sid;
 
     }
 
@@ -113,23 +390,56 @@ public class DBHelper extends SQLiteOpenHelper {
         ContentValues values = new ContentValues();
         values.put(RollKey, roll);
         values.put(StudentNameKey,studentName);
-        return sqLiteDatabase.update(StudentTableName,values,S_ID+"=?",new String[]{String.valueOf(pos)});
+        int updated = sqLiteDatabase.update(StudentTableName,values,S_ID+"=?",new String[]{String.valueOf(pos)});
+        if (updated > 0) RosterCache.invalidateStudent(pos);
+        return updated;
 
     }
-    Cursor cursor_student(long cid){
+    //the class's roster by roll, from RosterCache when it has the class
+    ArrayList<StudentItems> getStudents(long cid){
+        return RosterCache.get(this, cid);
+    }
+    ArrayList<StudentItems> readStudents(long cid){
+        Cursor cursor = queryStudents(cid);
+        ArrayList<StudentItems> studentItems = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                studentItems.add(new StudentItems(cursor.getLong(0), String.valueOf(cursor.getInt(1)), cursor.getString(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return studentItems;
+    }
+    //_SID, _ROLL, Student_Name of a class by roll, for callers that walk the roster without holding it
+    Cursor queryStudents(long cid){
         SQLiteDatabase sqLiteDatabase = this.getReadableDatabase();
-        return sqLiteDatabase.query(StudentTableName,null,C_ID+"=?",new String[]{String.valueOf(cid)},null,null,RollKey);
+        return sqLiteDatabase.query(StudentTableName,new String[]{S_ID,RollKey,StudentNameKey},C_ID+"=?",new String[]{String.valueOf(cid)},null,null,RollKey);
+    }
+    long countStudents(long cid){
+        return DatabaseUtils.queryNumEntries(this.getReadableDatabase(),StudentTableName,C_ID+"=?",new String[]{String.valueOf(cid)});
+    }
+    ClassItems getClassItem(long cid){
+        SQLiteDatabase sqLiteDatabase = this.getReadableDatabase();
+        Cursor cursor = sqLiteDatabase.query(ClassTableName,new String[]{C_ID,ClassNameKey,SectionNameKey},C_ID+"=?",new String[]{String.valueOf(cid)},null,null,null);
+        try {
+            return cursor.moveToFirst() ? new ClassItems(cursor.getInt(0), cursor.getString(1), cursor.getString(2)) : null;
+        } finally {
+            cursor.close();
+        }
     }
     long removeStudent(long cid){
         SQLiteDatabase sqLiteDatabase=this.getWritableDatabase();
-        return sqLiteDatabase.delete(StudentTableName,S_ID+"=?",new String[]{String.valueOf(cid)});
+        int removed = sqLiteDatabase.delete(StudentTableName,S_ID+"=?",new String[]{String.valueOf(cid)});
+        if (removed > 0) RosterCache.invalidateStudent(cid);
+        return removed;
     }
-    long addStatus(long sid, long cid, String date, String status){
+    long addStatus(long sid, long cid, long day, String status){
         SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(S_ID_Status,sid);
         values.put(C_ID, cid);
-        values.put(DateKey, date);
+        values.put(DateKey, day);
 
         // Use equals method to compare strings
         if (!status.equals("P")) {
@@ -137,41 +447,241 @@ public class DBHelper extends SQLiteOpenHelper {
         }
 
         values.put(StatusKey, status);
-        return sqLiteDatabase.insert(StatusTableName, null, values);
+        long id = sqLiteDatabase.insertWithOnConflict(StatusTableName, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        if (id != -1) RangeIndex.onSaved(cid, sid, day, status);
+        return id;
     }
-    long updateStatus(long sid, String date, String status){
+    long updateStatus(long sid, long day, String status){
         SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(StatusKey, status);
-        String selection = DateKey + "='" + date + "' AND " + S_ID_Status + "=" + sid;
-        int numRowsUpdated = sqLiteDatabase.update(StatusTableName, values, selection, null);
-        Log.d("DBHelper", "Rows updated: " + numRowsUpdated);
+        String selection = DateKey + " = ? AND " + S_ID_Status + " = ?";
+        int numRowsUpdated = sqLiteDatabase.update(StatusTableName, values, selection, new String[]{String.valueOf(day), String.valueOf(sid)});
+        //the row's class isn't known here
+        if (numRowsUpdated > 0) RangeIndex.invalidateAll();
         return numRowsUpdated;
     }
 
-    @SuppressLint("Range")
-    String getStatus(long sid, String date) {
+    //whole class-day in one transaction, anything that is not "P" is stored as "A" like addStatus
+    @Override
+    public int saveDayStatuses(long cid, long day, List<StudentItems> statuses) {
+        SQLiteDatabase sqLiteDatabase = this.getWritableDatabase();
+        SQLiteStatement insert = sqLiteDatabase.compileStatement("INSERT OR REPLACE INTO "+StatusTableName+"("+S_ID_Status+","+C_ID+","+DateKey+","+StatusKey+") VALUES (?,?,?,?)");
+        int saved = 0;
+        sqLiteDatabase.beginTransactionNonExclusive();
+        try {
+            for (StudentItems studentItem : statuses) {
+                String status = "P".equals(studentItem.getStatus()) ? "P" : "A";
+                insert.bindLong(1, studentItem.getSid());
+                insert.bindLong(2, cid);
+                insert.bindLong(3, day);
+                insert.bindString(4, status);
+                if (insert.executeInsert() != -1) saved++;
+            }
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+            insert.close();
+        }
+        RangeIndex.onDaySaved(cid, day, statuses);
+        return saved;
+    }
+
+    String getStatus(long sid, long day) {
         String status = null;
         SQLiteDatabase sqLiteDatabase = this.getReadableDatabase();
         String selection = S_ID_Status + " = ? AND " + DateKey + " = ?";
-        String[] selectionArgs = {String.valueOf(sid), date};
-        Cursor cursor = sqLiteDatabase.query(StatusTableName, null, selection, selectionArgs, null, null, null);
+        String[] selectionArgs = {String.valueOf(sid), String.valueOf(day)};
+        Cursor cursor = sqLiteDatabase.query(StatusTableName, new String[]{StatusKey}, selection, selectionArgs, null, null, null);
         if (cursor.moveToFirst()) {
-            status = cursor.getString(cursor.getColumnIndex(StatusKey));
-            System.out.println("Checkpoint No. 0003 loadStatus()");
-            System.out.println(status);
+            status = cursor.getString(0);
         }
         cursor.close();
         return status;
     }
 
-    Cursor getMonths(long cid){
+    //every status of a class on one day, keyed by _SID
+    @Override
+    public LongSparseArray<String> getDayStatuses(long cid, long day) {
+        SQLiteDatabase sqLiteDatabase = this.getReadableDatabase();
+        Cursor cursor = sqLiteDatabase.query(StatusTableName, new String[]{S_ID_Status, StatusKey}, C_ID + " = ? AND " + DateKey + " >= ? AND " + DateKey + " < ?", new String[]{String.valueOf(cid), String.valueOf(day), String.valueOf(day + 1)}, null, null, null);
+        LongSparseArray<String> statuses = new LongSparseArray<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                statuses.put(cursor.getLong(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return statuses;
+    }
+
+    //whole month of a class in one query, month is 1-12
+    @Override
+    public MonthMatrix getMonthMatrix(long cid, int year, int month) {
+        SQLiteDatabase sqLiteDatabase = this.getReadableDatabase();
+        long start = EpochDays.of(year, month, 1);
+        long end = EpochDays.nextMonth(start);
+        Cursor cursor = sqLiteDatabase.query(StatusTableName, new String[]{S_ID_Status, DateKey, StatusKey}, C_ID + " = ? AND " + DateKey + " >= ? AND " + DateKey + " < ?", new String[]{String.valueOf(cid), String.valueOf(start), String.valueOf(end)}, null, null, S_ID_Status);
+        int size = 0;
+        long[] sids = new long[64];
+        int[] present = new int[64];
+        int[] absent = new int[64];
+        try {
+            while (cursor.moveToNext()) {
+                long sid = cursor.getLong(0);
+                if (size == 0 || sids[size - 1] != sid) {
+                    if (size == sids.length) {
+                        sids = Arrays.copyOf(sids, size * 2);
+                        present = Arrays.copyOf(present, size * 2);
+                        absent = Arrays.copyOf(absent, size * 2);
+                    }
+                    sids[size++] = sid;
+                }
+                int bit = 1 << (int) (cursor.getLong(1) - start);
+                if ("P".equals(cursor.getString(2))) present[size - 1] |= bit;
+                else absent[size - 1] |= bit;
+            }
+        } finally {
+            cursor.close();
+        }
+        return new MonthMatrix(year, month, Arrays.copyOf(sids, size), Arrays.copyOf(present, size), Arrays.copyOf(absent, size));
+    }
+
+    //first day of every month the class has attendance in, oldest first
+    //each step is one index seek for the first mark at or after the next month
+    long[] getMonths(long cid){
         SQLiteDatabase sqLiteDatabase=this.getReadableDatabase();
-        return sqLiteDatabase.query(StatusTableName,new String[]{DateKey},C_ID+"="+cid,null,"substr("+DateKey+",4,7)",null,null);
+        SQLiteStatement next = sqLiteDatabase.compileStatement("SELECT MIN(" + DateKey + ") FROM " + StatusTableName + " WHERE " + C_ID + " = ? AND " + DateKey + " >= ?");
+        long[] months = new long[12];
+        int size = 0;
+        try {
+            next.bindLong(1, cid);
+            long from = Long.MIN_VALUE;
+            while (true) {
+                next.bindLong(2, from);
+                String first = next.simpleQueryForString();
+                if (first == null) break;
+                long month = EpochDays.monthStart(Long.parseLong(first));
+                if (size == months.length) months = Arrays.copyOf(months, size * 2);
+                months[size++] = month;
+                from = EpochDays.nextMonth(month);
+            }
+        } finally {
+            next.close();
+        }
+        return Arrays.copyOf(months, size);
+    }
+
+    //present days as a percentage of marked days for each month of the class, -1 where nothing is marked.
+    //reads a Status_Rollup row per student per month instead of every day
+    int[] getMonthPercents(long cid, long[] months){
+        int[] percents = new int[months.length];
+        Arrays.fill(percents, -1);
+        Cursor cursor = this.getReadableDatabase().query(RollupTableName, new String[]{MonthKey, "SUM(" + PresentCountKey + ")", "SUM(" + MarkedDaysKey + ")"}, C_ID + " = ?", new String[]{String.valueOf(cid)}, MonthKey, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                int i = Arrays.binarySearch(months, cursor.getLong(0));
+                long marked = cursor.getLong(2);
+                if (i >= 0 && marked > 0) percents[i] = (int) (cursor.getLong(1) * 100 / marked);
+            }
+        } finally {
+            cursor.close();
+        }
+        return percents;
+    }
+
+    //students of every class whose present days are below threshold percent of their marked days in the months from
+    //from (a first day) on, lowest first. One pass over Status_Rollup, a row per student per month
+    ArrayList<Defaulter> getDefaulters(long from, int threshold){
+        String present = "SUM(" + RollupTableName + "." + PresentCountKey + ")";
+        String marked = "SUM(" + RollupTableName + "." + MarkedDaysKey + ")";
+        String sql = "SELECT " + StudentTableName + "." + S_ID + ", " + ClassTableName + "." + C_ID + ", " + ClassNameKey + ", " + SectionNameKey + ", " + RollKey + ", " + StudentNameKey + ", " + present + ", " + marked
+                + " FROM " + RollupTableName
+                + " JOIN " + StudentTableName + " ON " + StudentTableName + "." + S_ID + " = " + RollupTableName + "." + S_ID_Status
+                + " JOIN " + ClassTableName + " ON " + ClassTableName + "." + C_ID + " = " + StudentTableName + "." + C_ID_Student
+                + " WHERE " + RollupTableName + "." + MonthKey + " >= ?"
+                + " GROUP BY " + StudentTableName + "." + S_ID
+                + " HAVING " + present + " * 100 < ? * " + marked
+                + " ORDER BY " + present + " * 1.0 / " + marked + ", " + ClassNameKey + ", " + SectionNameKey + ", " + RollKey;
+        Cursor cursor = this.getReadableDatabase().rawQuery(sql, new String[]{String.valueOf(from), String.valueOf(threshold)});
+        ArrayList<Defaulter> defaulters = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                defaulters.add(new Defaulter(cursor.getLong(0), cursor.getLong(1), cursor.getString(2), cursor.getString(3), cursor.getInt(4), cursor.getString(5), cursor.getInt(6), cursor.getInt(7)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return defaulters;
+    }
+
+    //students of any class matching every word of text as a prefix of their name, roll, class or section
+    ArrayList<StudentMatch> searchStudents(String text, int limit){
+        String match = matchQuery(text);
+        ArrayList<StudentMatch> matches = new ArrayList<>();
+        if (match == null) return matches;
+        String sql = "SELECT " + StudentTableName + "." + S_ID + ", " + StudentTableName + "." + C_ID_Student + ", " + StudentTableName + "." + RollKey + ", " + StudentTableName + "." + StudentNameKey + ", " + ClassNameKey + ", " + SectionNameKey
+                + " FROM " + SearchTableName
+                + " JOIN " + StudentTableName + " ON " + StudentTableName + "." + S_ID + " = " + SearchTableName + ".docid"
+                + " JOIN " + ClassTableName + " ON " + ClassTableName + "." + C_ID + " = " + StudentTableName + "." + C_ID_Student
+                + " WHERE " + SearchTableName + " MATCH ?"
+                + " ORDER BY " + ClassNameKey + ", " + SectionNameKey + ", " + RollKey + " LIMIT " + limit;
+        Cursor cursor = this.getReadableDatabase().rawQuery(sql, new String[]{match});
+        try {
+            while (cursor.moveToNext()) {
+                matches.add(new StudentMatch(cursor.getLong(0), cursor.getInt(1), cursor.getInt(2), cursor.getString(3), cursor.getString(4), cursor.getString(5)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return matches;
+    }
+
+    //"rah 6" -> "rah* 6*", words split where the simple tokenizer splits them, so no FTS syntax gets through.
+    //null when nothing is left to search for
+    static String matchQuery(String text) {
+        StringBuilder match = new StringBuilder();
+        int length = text.length();
+        for (int i = 0; i < length; ) {
+            while (i < length && !isTokenChar(text.charAt(i))) i++;
+            int start = i;
+            while (i < length && isTokenChar(text.charAt(i))) i++;
+            if (i > start) {
+                if (match.length() > 0) match.append(' ');
+                match.append(text, start, i).append('*');
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    //ASCII letters and digits and everything past ASCII, Bengali vowel signs included
+    private static boolean isTokenChar(char c) {
+        return c >= 0x80 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    //the month's count plus the class's roster count, both only go up so the sum changes with either,
+    //0 until something in the class-month or the roster is written
+    long getReportVersion(long cid, long month){
+        SQLiteStatement version = this.getReadableDatabase().compileStatement("SELECT IFNULL(SUM(" + VersionKey + "), 0) FROM " + ReportVersionTableName + " WHERE " + C_ID + " = ? AND " + MonthKey + " IN (?, " + RosterMonth + ")");
+        try {
+            version.bindLong(1, cid);
+            version.bindLong(2, month);
+            return version.simpleQueryForLong();
+        } finally {
+            version.close();
+        }
+    }
+
+    //bit-packed month rows over the same database, see MonthlyStatusStore
+    MonthlyStatusStore monthlyStore() {
+        return new MonthlyStatusStore(this);
     }
 
-    public void deleteStatus(long sid, long cid, String data) {
+    public void deleteStatus(long sid, long cid, long day) {
         SQLiteDatabase sqLiteDatabase=this.getWritableDatabase();
-        sqLiteDatabase.delete(StatusTableName,C_ID+"="+cid+" AND "+S_ID_Status+"="+sid+" AND "+DateKey+"='"+data+"'",null);
+        int deleted = sqLiteDatabase.delete(StatusTableName,C_ID+" = ? AND "+S_ID_Status+" = ? AND "+DateKey+" = ?",new String[]{String.valueOf(cid),String.valueOf(sid),String.valueOf(day)});
+        //the index has no unmarked point update, the class is built again on its next use
+        if (deleted > 0) RangeIndex.invalidate(cid);
     }
 }
@@ -0,0 +1,45 @@
+package com.inan.cmhs.attendance;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.List;
+
+//A student below the attendance threshold over a term, see DBHelper.getDefaulters
+public class Defaulter {
+    final long sid, cid;
+    final String className, section, name;
+    final int roll, present, marked;
+
+    Defaulter(long sid, long cid, String className, String section, int roll, String name, int present, int marked) {
+        this.sid = sid;
+        this.cid = cid;
+        this.className = className;
+        this.section = section;
+        this.roll = roll;
+        this.name = name;
+        this.present = present;
+        this.marked = marked;
+    }
+
+    int percent() {
+        return marked > 0 ? present * 100 / marked : 0;
+    }
+
+    //the ranked list as CSV, closes out
+    static void writeCsv(List<Defaulter> defaulters, OutputStream out) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"))) {
+            writer.write("Percent,Class,Section,Roll,Name,Present,Marked\r\n");
+            for (Defaulter defaulter : defaulters) {
+                writer.write(defaulter.percent() + "," + field(defaulter.className) + "," + field(defaulter.section) + "," + defaulter.roll + ","
+                        + field(defaulter.name) + "," + defaulter.present + "," + defaulter.marked + "\r\n");
+            }
+        }
+    }
+
+    private static String field(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
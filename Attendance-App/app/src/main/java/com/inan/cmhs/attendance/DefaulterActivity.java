@@ -0,0 +1,159 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.text.InputType;
+import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.ImageView;
+import android.widget.ListView;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+//Students of every class below the threshold since the term start, lowest first. Tap the subtitle to change the
+//threshold, save exports the list as CSV
+public class DefaulterActivity extends AppCompatActivity implements ExportJob.Listener {
+    static final int DEFAULT_THRESHOLD = 75;
+    TextView title,section;
+    ImageView back,save;
+    ListView defaulterList;
+    ProgressBar progressBar;
+    ArrayAdapter<String> adapter;
+    ArrayList<String> listItems=new ArrayList<>();
+    ArrayList<Defaulter> defaulters=new ArrayList<>();
+    DefaulterViewModel defaulterViewModel;
+    ExportJob exportJob;
+    long from;
+    int threshold=DEFAULT_THRESHOLD;
+    String term;
+    final ActivityResultLauncher<Intent> createDocument = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
+        if (result.getResultCode() == RESULT_OK && result.getData() != null) export(result.getData().getData());
+    });
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_defaulter);
+        title=findViewById(R.id.title_tool);
+        section=findViewById(R.id.section_tool);
+        back=findViewById(R.id.back);
+        save=findViewById(R.id.save);
+        progressBar=findViewById(R.id.export_progress);
+        defaulterList=findViewById(R.id.defaulterList);
+        from=getIntent().getLongExtra("from",Long.MIN_VALUE);
+        term=getIntent().getStringExtra("term");
+        if (savedInstanceState != null) threshold=savedInstanceState.getInt("threshold",DEFAULT_THRESHOLD);
+        title.setText("Defaulters");
+        adapter=new ArrayAdapter<>(this,android.R.layout.simple_list_item_1,listItems);
+        defaulterList.setAdapter(adapter);
+        defaulterViewModel=new ViewModelProvider(this).get(DefaulterViewModel.class);
+        back.setOnClickListener(v->onBackPressed());
+        save.setOnClickListener(v->exportList());
+        section.setOnClickListener(v->showThresholdDialog());
+        defaulterViewModel.getDefaulters().observe(this,this::showDefaulters);
+        load();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt("threshold",threshold);
+    }
+
+    private void load() {
+        section.setText("Below "+threshold+"% since "+term);
+        defaulterViewModel.load(from,threshold);
+    }
+
+    private void showDefaulters(ArrayList<Defaulter> result) {
+        defaulters=result;
+        listItems.clear();
+        for (Defaulter defaulter : result) {
+            listItems.add(defaulter.percent()+"%   "+defaulter.className+" - "+defaulter.section+", Roll "+defaulter.roll+"\n"+defaulter.name+" ("+defaulter.present+" of "+defaulter.marked+" days)");
+        }
+        adapter.notifyDataSetChanged();
+        if (result.isEmpty()) Toast.makeText(this,"No students below "+threshold+"%",Toast.LENGTH_SHORT).show();
+    }
+
+    private void showThresholdDialog() {
+        EditText input=new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER);
+        input.setText(String.valueOf(threshold));
+        new AlertDialog.Builder(this).setTitle("Threshold %").setView(input)
+                .setPositiveButton("OK",(dialog,which)->{
+                    try {
+                        int value=Integer.parseInt(input.getText().toString());
+                        if (value < 1 || value > 100) throw new NumberFormatException();
+                        threshold=value;
+                        load();
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this,"Enter a number from 1 to 100",Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Cancel",null)
+                .show();
+    }
+
+    private void exportList() {
+        if (exportJob != null && exportJob.isRunning()) {
+            exportJob.cancel();
+            return;
+        }
+        if (defaulters.isEmpty()) {
+            Toast.makeText(this,"Nothing to export",Toast.LENGTH_SHORT).show();
+            return;
+        }
+        ExportJob.requestNotificationPermission(this);
+        createDocument.launch(ExportFormat.CSV.createDocument("Defaulters below "+threshold+" since "+term));
+    }
+
+    private void export(Uri uri) {
+        if (uri == null) return;
+        final ArrayList<Defaulter> rows=defaulters;
+        progressBar.setProgress(0);
+        progressBar.setVisibility(View.VISIBLE);
+        exportJob=ExportJob.start(this,"Defaulters",uri,new ExportJob.Writer() {
+            @Override
+            public int countRows() {
+                return rows.size();
+            }
+
+            @Override
+            public void write(OutputStream out, AttendanceReport.Progress progress) throws Exception {
+                Defaulter.writeCsv(rows,out);
+                progress.onRows(rows.size());
+            }
+        },this);
+    }
+
+    @Override
+    public void onProgress(ExportJob job, int done, int total) {
+        progressBar.setMax(total);
+        progressBar.setProgress(done);
+    }
+
+    @Override
+    public void onFinished(ExportJob job, boolean completed, Exception error) {
+        progressBar.setVisibility(View.GONE);
+        if (completed) Toast.makeText(this,"CSV created successfully",Toast.LENGTH_LONG).show();
+        else Toast.makeText(this,error != null ? "Error while exporting" : "Export cancelled",Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (exportJob != null) exportJob.setListener(null);
+    }
+}
@@ -0,0 +1,35 @@
+package com.inan.cmhs.attendance;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+
+//Defaulter list for DefaulterActivity, kept across rotation and read again when the threshold changes
+public class DefaulterViewModel extends AndroidViewModel {
+    private final AttendanceRepository repository;
+    private final MutableLiveData<ArrayList<Defaulter>> defaulters = new MutableLiveData<>();
+    private long from = Long.MIN_VALUE;
+    private int threshold = -1;
+
+    public DefaulterViewModel(@NonNull Application application) {
+        super(application);
+        repository = AttendanceRepository.getInstance(application);
+    }
+
+    LiveData<ArrayList<Defaulter>> getDefaulters() {
+        return defaulters;
+    }
+
+    //no query when it's already the shown list, after a rotation
+    void load(long from, int threshold) {
+        if (this.from == from && this.threshold == threshold) return;
+        this.from = from;
+        this.threshold = threshold;
+        repository.getDefaulters(from, threshold, defaulters::setValue);
+    }
+}
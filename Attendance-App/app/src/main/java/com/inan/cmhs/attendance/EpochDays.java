@@ -0,0 +1,85 @@
+package com.inan.cmhs.attendance;
+
+import java.util.Calendar;
+
+//Date_Key is stored as days since 1970-01-01, these convert to and from calendar dates (month is 1-12)
+public final class EpochDays {
+
+    private EpochDays() {
+    }
+
+    public static long of(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    //first day of the month after the one containing epochDay
+    public static long nextMonth(long epochDay) {
+        int year = year(epochDay);
+        int month = month(epochDay);
+        return month == 12 ? of(year + 1, 1, 1) : of(year, month + 1, 1);
+    }
+
+    //in the device's time zone
+    public static long today() {
+        Calendar calendar = Calendar.getInstance();
+        return of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    public static long monthStart(long epochDay) {
+        return of(year(epochDay), month(epochDay), 1);
+    }
+
+    public static int year(long epochDay) {
+        long[] ymd = civil(epochDay);
+        return (int) ymd[0];
+    }
+
+    public static int month(long epochDay) {
+        long[] ymd = civil(epochDay);
+        return (int) ymd[1];
+    }
+
+    public static int dayOfMonth(long epochDay) {
+        long[] ymd = civil(epochDay);
+        return (int) ymd[2];
+    }
+
+    //"dd.MM.yyyy" as written by MyCalendar before schema v2, -1 if it can't be read
+    public static long parse(String date) {
+        if (date == null || date.length() != 10 || date.charAt(2) != '.' || date.charAt(5) != '.') return -1;
+        int day = digits(date, 0, 2);
+        int month = digits(date, 3, 5);
+        int year = digits(date, 6, 10);
+        if (day < 1 || day > 31 || month < 1 || month > 12 || year < 0) return -1;
+        return of(year, month, day);
+    }
+
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            //Character.digit also accepts locale digits, DateFormat may have written those
+            int digit = Character.digit(s.charAt(i), 10);
+            if (digit < 0) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static long[] civil(long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return new long[]{year, month, day};
+    }
+}
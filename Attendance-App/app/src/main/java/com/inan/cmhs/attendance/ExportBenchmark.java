@@ -0,0 +1,103 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+//Writes the same year of attendance with every ExportProfile and measures bytes and time, so a profile can be picked
+//on numbers from this phone. The data is synthetic and lives in its own database that is deleted afterwards.
+class ExportBenchmark {
+    static final String DB_NAME = "export-benchmark.db";
+    static final int STUDENTS = 60;
+    static final int YEAR = 2023;
+
+    static final class Result {
+        final ExportProfile profile;
+        final long bytes, millis;
+
+        Result(ExportProfile profile, long bytes, long millis) {
+            this.profile = profile;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %d KiB in %d ms", profile.label, bytes / 1024, millis);
+        }
+    }
+
+    static List<Result> run(Context context) {
+        context.deleteDatabase(DB_NAME);
+        DBHelper dbHelper = new DBHelper(context, DB_NAME);
+        try {
+            long cid = fill(dbHelper);
+            long[] months = new long[12];
+            for (int month = 1; month <= 12; month++) months[month - 1] = EpochDays.of(YEAR, month, 1);
+            //unmeasured pass so class loading and the font cache don't count against the first profile
+            write(dbHelper, cid, months, ExportProfile.FAST_DRAFT);
+            List<Result> results = new ArrayList<>();
+            for (ExportProfile profile : ExportProfile.values()) {
+                long start = SystemClock.elapsedRealtime();
+                long bytes = write(dbHelper, cid, months, profile);
+                results.add(new Result(profile, bytes, SystemClock.elapsedRealtime() - start));
+            }
+            return results;
+        } finally {
+            dbHelper.close();
+            context.deleteDatabase(DB_NAME);
+        }
+    }
+
+    //one class with every weekday of YEAR marked, about one absence in seven
+    private static long fill(DBHelper dbHelper) {
+        long cid = dbHelper.addClass("Class 8", "A");
+        ArrayList<StudentItems> studentItems = new ArrayList<>(STUDENTS);
+        SQLiteDatabase sqLiteDatabase = dbHelper.getWritableDatabase();
+        sqLiteDatabase.beginTransactionNonExclusive();
+        try {
+            for (int roll = 1; roll <= STUDENTS; roll++) {
+                String name = "Student " + roll;
+                studentItems.add(new StudentItems(dbHelper.addStudent(cid, roll, name), String.valueOf(roll), name));
+            }
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+        for (long day = EpochDays.of(YEAR, 1, 1); day < EpochDays.of(YEAR + 1, 1, 1); day++) {
+            //epoch day 0 was a Thursday, 2 and 3 are Saturday and Sunday
+            if (day % 7 == 2 || day % 7 == 3) continue;
+            for (int i = 0; i < STUDENTS; i++) studentItems.get(i).setStatus((i * 31 + day) % 7 == 0 ? "A" : "P");
+            dbHelper.saveDayStatuses(cid, day, studentItems);
+        }
+        return cid;
+    }
+
+    private static long write(DBHelper dbHelper, long cid, long[] months, ExportProfile profile) {
+        CountingOutputStream out = new CountingOutputStream();
+        AttendanceReport report = new AttendanceReport(dbHelper);
+        report.setProfile(profile);
+        report.writeMonths(cid, months, out);
+        return out.count;
+    }
+
+    //only the size matters, the bytes are dropped
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.inan.cmhs.attendance;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+//Cancel action on an export's progress notification
+public class ExportCancelReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (ExportJob.ACTION_CANCEL.equals(intent.getAction())) ExportJob.cancel(intent.getIntExtra(ExportJob.EXTRA_ID, 0));
+    }
+}
@@ -0,0 +1,52 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+import android.content.Intent;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.widget.PopupMenu;
+
+//File types an export can be saved as
+enum ExportFormat {
+    PDF("PDF", "application/pdf", ".pdf"),
+    CSV("CSV", "text/csv", ".csv"),
+    TSV("TSV", "text/tab-separated-values", ".tsv");
+
+    interface OnPicked {
+        void onPicked(ExportFormat format);
+    }
+
+    final String label, mimeType, extension;
+
+    ExportFormat(String label, String mimeType, String extension) {
+        this.label = label;
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    //asks the user where to save name, the result's data is the document's uri
+    Intent createDocument(String name) {
+        return new Intent(Intent.ACTION_CREATE_DOCUMENT)
+                .addCategory(Intent.CATEGORY_OPENABLE)
+                .setType(mimeType)
+                .putExtra(Intent.EXTRA_TITLE, name + extension);
+    }
+
+    char separator() {
+        return this == TSV ? CsvExporter.TSV : CsvExporter.CSV;
+    }
+
+    //PDF / CSV / TSV popup under anchor, with a Print item at the end when onPrint is given
+    static void pick(Context context, View anchor, OnPicked onPicked, @Nullable Runnable onPrint) {
+        PopupMenu popup = new PopupMenu(context, anchor);
+        for (ExportFormat format : values()) popup.getMenu().add(0, format.ordinal(), format.ordinal(), format.label);
+        if (onPrint != null) popup.getMenu().add(0, values().length, values().length, "Print");
+        popup.setOnMenuItemClickListener(item -> {
+            if (item.getItemId() == values().length) onPrint.run();
+            else onPicked.onPicked(values()[item.getItemId()]);
+            return true;
+        });
+        popup.show();
+    }
+}
@@ -0,0 +1,260 @@
+package com.inan.cmhs.attendance;
+
+import android.Manifest;
+import android.app.Activity;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+import androidx.documentfile.provider.DocumentFile;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//A report export running on its own threads, apart from the repository's. The report streams into a document the user picked through the
+//Storage Access Framework, progress goes to the listener on the main thread and to a notification with a cancel action.
+public class ExportJob {
+    public interface Listener {
+        void onProgress(ExportJob job, int done, int total);
+
+        //completed is false when the job was cancelled or failed, error is only set for a failure
+        void onFinished(ExportJob job, boolean completed, @Nullable Exception error);
+    }
+
+    static final String ACTION_CANCEL = "com.inan.cmhs.attendance.CANCEL_EXPORT";
+    static final String EXTRA_ID = "exportId";
+    private static final String CHANNEL_ID = "export";
+    //long renders, kept off the repository's threads so loads and saves don't wait behind an export
+    static final ExecutorService EXPORTS = Executors.newFixedThreadPool(2, AttendanceRepository.threads("attendance-export-"));
+    //jobs that haven't finished yet by notification id, only touched on the main thread
+    private static final SparseArray<ExportJob> running = new SparseArray<>();
+    private static int nextId = 1;
+
+    private final int id;
+    private final Context context;
+    private final String name;
+    private final Uri uri;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final NotificationCompat.Builder notification;
+    private Listener listener;
+    private int shownPercent = -1;
+
+    //what a job writes, both methods run on EXPORTS
+    interface Writer {
+        //rows the progress will count up to
+        int countRows();
+
+        //out is the document's own stream, unbuffered
+        void write(OutputStream out, AttendanceReport.Progress progress) throws Exception;
+    }
+
+    //exports the given months (first days as epoch days) of a class to uri, months unchanged since the last export
+    //come from the ReportCache
+    static ExportJob start(Context context, String name, final long cid, final long[] months, Uri uri, Listener listener) {
+        final ReportCache reportCache = ReportCache.get(context);
+        final ExportProfile profile = ExportProfile.get(context);
+        return start(context, name, uri, new Writer() {
+            @Override
+            public int countRows() {
+                return reportCache.countRows(cid, months, profile);
+            }
+
+            @Override
+            public void write(OutputStream out, AttendanceReport.Progress progress) throws IOException {
+                reportCache.writeMonths(cid, months, profile, new BufferedOutputStream(out), progress);
+            }
+        }, listener);
+    }
+
+    //Status_Table rows of a class (every class when cid < 0) from day from up to but not including day to
+    static ExportJob startCsv(Context context, String name, final char separator, final long cid, final long from, final long to, Uri uri, Listener listener) {
+        final CsvExporter exporter = new CsvExporter(DBHelper.getInstance(context), separator);
+        return start(context, name, uri, new Writer() {
+            @Override
+            public int countRows() {
+                return exporter.countRows(cid, from, to);
+            }
+
+            @Override
+            public void write(OutputStream out, AttendanceReport.Progress progress) throws IOException {
+                exporter.write(cid, from, to, out, progress);
+            }
+        }, listener);
+    }
+
+    static ExportJob start(Context context, String name, Uri uri, final Writer writer, Listener listener) {
+        final ExportJob job = new ExportJob(context.getApplicationContext(), name, uri, listener);
+        running.put(job.id, job);
+        job.showProgress(0, 1);
+        EXPORTS.execute(() -> job.run(writer));
+        return job;
+    }
+
+    //the job still running under id, for an activity recreated while it ran
+    @Nullable
+    static ExportJob find(int id) {
+        return running.get(id);
+    }
+
+    //called from the notification's cancel action
+    static void cancel(int id) {
+        ExportJob job = running.get(id);
+        if (job != null) job.cancel();
+    }
+
+    //android 13 needs the user's ok before the progress notification shows, the export runs either way
+    static void requestNotificationPermission(Activity activity) {
+        if (Build.VERSION.SDK_INT >= 33 && ContextCompat.checkSelfPermission(activity, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(activity, new String[]{Manifest.permission.POST_NOTIFICATIONS}, 0);
+        }
+    }
+
+    private ExportJob(Context context, String name, Uri uri, Listener listener) {
+        this.id = nextId++;
+        this.context = context;
+        this.name = name;
+        this.uri = uri;
+        this.listener = listener;
+        if (Build.VERSION.SDK_INT >= 26) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Exports", NotificationManager.IMPORTANCE_LOW);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+        Intent cancel = new Intent(context, ExportCancelReceiver.class).setAction(ACTION_CANCEL).putExtra(EXTRA_ID, id);
+        notification = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(name)
+                .setOnlyAlertOnce(true)
+                .setOngoing(true)
+                .addAction(0, "Cancel", PendingIntent.getBroadcast(context, id, cancel, pendingIntentFlags()));
+    }
+
+    private static int pendingIntentFlags() {
+        return PendingIntent.FLAG_UPDATE_CURRENT | (Build.VERSION.SDK_INT >= 23 ? PendingIntent.FLAG_IMMUTABLE : 0);
+    }
+
+    //the activity that started the job drops its listener when it goes away, the job keeps running
+    void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    void cancel() {
+        cancelled.set(true);
+    }
+
+    int getId() {
+        return id;
+    }
+
+    Uri getUri() {
+        return uri;
+    }
+
+    boolean isRunning() {
+        return running.get(id) == this;
+    }
+
+    //finish always runs, an Error from a large render must still delete the half written document
+    private void run(Writer writer) {
+        Exception error = null;
+        try {
+            error = write(writer);
+        } catch (Throwable t) {
+            error = new Exception(t);
+        } finally {
+            final Exception result = error;
+            mainHandler.post(() -> finish(result));
+        }
+    }
+
+    //returns the failure or null
+    private Exception write(Writer writer) {
+        OutputStream out = null;
+        try {
+            ReportResources.loadLogo(context);
+            final int total = Math.max(1, writer.countRows());
+            final AtomicInteger done = new AtomicInteger();
+            out = context.getContentResolver().openOutputStream(uri, "w");
+            if (out == null) throw new IOException("can't open " + uri);
+            //may be called from several threads at once
+            writer.write(out, rows -> {
+                if (cancelled.get()) throw new CancellationException();
+                final int progress = done.addAndGet(rows);
+                mainHandler.post(() -> showProgress(progress, total));
+            });
+            return null;
+        } catch (Exception e) {
+            return cancelled.get() ? null : e;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void showProgress(int done, int total) {
+        if (listener != null) listener.onProgress(this, done, total);
+        int percent = done * 100 / total;
+        if (percent == shownPercent) return;
+        shownPercent = percent;
+        notification.setProgress(100, percent, false).setContentText(percent + "%");
+        notify(notification);
+    }
+
+    private void finish(Exception error) {
+        running.remove(id);
+        boolean completed = error == null && !cancelled.get();
+        if (completed) {
+            Intent view = new Intent(Intent.ACTION_VIEW).setDataAndType(uri, context.getContentResolver().getType(uri)).addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_ACTIVITY_NEW_TASK);
+            notify(new NotificationCompat.Builder(context, CHANNEL_ID)
+                    .setSmallIcon(android.R.drawable.stat_sys_download_done)
+                    .setContentTitle(name)
+                    .setContentText("Export finished")
+                    .setAutoCancel(true)
+                    .setContentIntent(PendingIntent.getActivity(context, id, view, pendingIntentFlags())));
+        } else {
+            //don't leave a half written file where the user chose to save
+            DocumentFile document = DocumentFile.fromSingleUri(context, uri);
+            if (document != null) document.delete();
+            if (error != null) {
+                Log.e("ExportJob", "export failed", error);
+                notify(new NotificationCompat.Builder(context, CHANNEL_ID)
+                        .setSmallIcon(android.R.drawable.stat_notify_error)
+                        .setContentTitle(name)
+                        .setContentText("Export failed")
+                        .setAutoCancel(true));
+            } else {
+                NotificationManagerCompat.from(context).cancel(id);
+            }
+        }
+        if (listener != null) listener.onFinished(this, completed, error);
+    }
+
+    private void notify(NotificationCompat.Builder builder) {
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
+        if (notificationManager.areNotificationsEnabled()) notificationManager.notify(id, builder.build());
+    }
+}
@@ -0,0 +1,57 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+
+import com.itextpdf.kernel.pdf.CompressionConstants;
+import com.itextpdf.kernel.pdf.PdfVersion;
+import com.itextpdf.kernel.pdf.WriterProperties;
+
+//How the PDF writer trades file size for speed. The chosen one is kept in the "export" preferences.
+public enum ExportProfile {
+    //quick look on the phone, light compression and nothing else
+    FAST_DRAFT("Fast draft") {
+        @Override
+        WriterProperties writerProperties() {
+            return new WriterProperties().setCompressionLevel(CompressionConstants.BEST_SPEED);
+        }
+    },
+    //smallest file for keeping, object streams, best compression and smart mode dropping repeated objects
+    COMPACT_ARCHIVE("Compact archive") {
+        @Override
+        WriterProperties writerProperties() {
+            return new WriterProperties().setFullCompressionMode(true).setCompressionLevel(CompressionConstants.BEST_COMPRESSION).useSmartMode();
+        }
+    },
+    //for sending around, PDF 1.4 without object streams so old viewers open it, still deduplicated
+    SHAREABLE("Shareable") {
+        @Override
+        WriterProperties writerProperties() {
+            return new WriterProperties().setPdfVersion(PdfVersion.PDF_1_4).setCompressionLevel(CompressionConstants.DEFAULT_COMPRESSION).useSmartMode();
+        }
+    };
+
+    private static final String PREFERENCES = "export";
+    private static final String KEY = "profile";
+
+    final String label;
+
+    ExportProfile(String label) {
+        this.label = label;
+    }
+
+    //a new one for every writer, WriterProperties isn't meant to be shared
+    abstract WriterProperties writerProperties();
+
+    static ExportProfile get(Context context) {
+        String name = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).getString(KEY, SHAREABLE.name());
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return SHAREABLE;
+        }
+    }
+
+    static void save(Context context, ExportProfile profile) {
+        context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit().putString(KEY, profile.name()).apply();
+    }
+}
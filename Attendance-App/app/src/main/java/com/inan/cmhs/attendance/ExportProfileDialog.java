@@ -0,0 +1,44 @@
+package com.inan.cmhs.attendance;
+
+import android.app.Activity;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+
+import java.util.List;
+
+//Picks the ExportProfile used by every export, "Measure" runs ExportBenchmark and shows its numbers next to each profile
+class ExportProfileDialog {
+    private ExportProfileDialog() {
+    }
+
+    static void show(final Activity activity, @Nullable List<ExportBenchmark.Result> results) {
+        final ExportProfile[] profiles = ExportProfile.values();
+        String[] labels = new String[profiles.length];
+        for (int i = 0; i < profiles.length; i++) labels[i] = results != null ? results.get(i).toString() : profiles[i].label;
+        final int[] checked = {ExportProfile.get(activity).ordinal()};
+        new AlertDialog.Builder(activity)
+                .setTitle(results != null ? "Export profile, one year of " + ExportBenchmark.STUDENTS + " students" : "Export profile")
+                .setSingleChoiceItems(labels, checked[0], (dialog, which) -> checked[0] = which)
+                .setPositiveButton("Save", (dialog, which) -> ExportProfile.save(activity, profiles[checked[0]]))
+                .setNeutralButton("Measure", (dialog, which) -> measure(activity))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private static void measure(final Activity activity) {
+        Toast.makeText(activity, "Measuring export profiles...", Toast.LENGTH_SHORT).show();
+        ExportJob.EXPORTS.execute(() -> {
+            try {
+                final List<ExportBenchmark.Result> results = ExportBenchmark.run(activity.getApplicationContext());
+                activity.runOnUiThread(() -> {
+                    if (!activity.isFinishing()) show(activity, results);
+                });
+            } catch (RuntimeException e) {
+                Log.e("ExportProfileDialog", "measuring failed", e);
+            }
+        });
+    }
+}
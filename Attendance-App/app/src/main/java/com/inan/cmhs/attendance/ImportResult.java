@@ -0,0 +1,39 @@
+package com.inan.cmhs.attendance;
+
+import java.util.ArrayList;
+
+//What a roster import did. problems holds the first MAX_PROBLEMS skipped lines and why they were skipped.
+class ImportResult {
+    static final int MAX_PROBLEMS = 50;
+
+    int inserted, collisions, invalid, classesCreated;
+    final ArrayList<String> problems = new ArrayList<>();
+    //set when the file couldn't be read to the end, batches before it are kept
+    String error;
+
+    void collision(int line, int roll, String name) {
+        collisions++;
+        problem("line " + line + ": roll " + roll + " " + name + " is already in the class");
+    }
+
+    void invalid(int line, String why) {
+        invalid++;
+        problem("line " + line + ": " + why);
+    }
+
+    private void problem(String problem) {
+        if (problems.size() < MAX_PROBLEMS) problems.add(problem);
+    }
+
+    String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(inserted).append(" students added");
+        if (classesCreated > 0) summary.append(", ").append(classesCreated).append(" classes created");
+        if (collisions > 0) summary.append("\n").append(collisions).append(" already existed");
+        if (invalid > 0) summary.append("\n").append(invalid).append(" lines skipped");
+        if (error != null) summary.append("\nStopped early: ").append(error);
+        for (String problem : problems) summary.append("\n").append(problem);
+        if (collisions + invalid > problems.size()) summary.append("\n...");
+        return summary.toString();
+    }
+}
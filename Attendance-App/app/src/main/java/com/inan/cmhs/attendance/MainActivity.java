@@ -1,14 +1,18 @@
 package com.inan.cmhs.attendance;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.PopupMenu;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.annotation.SuppressLint;
 import android.content.Intent;
-import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
@@ -19,17 +23,21 @@ import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
+import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity implements AdapterView.OnItemSelectedListener {
+public class MainActivity extends AppCompatActivity implements AdapterView.OnItemSelectedListener, ExportJob.Listener {
     //Static Vars
     FloatingActionButton floatingActionButton;
     RecyclerView recyclerView;
@@ -39,9 +47,20 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
     Spinner name, section;
     TextView title, Section;
     ImageView back, save;
-    DBHelper dbHelper;
+    ClassViewModel classViewModel;
     AutoCompleteTextView acTextView;
     Button cancel, add;
+    ProgressBar progressBar;
+    ExportJob exportJob;
+    long[] termMonths;
+    ExportFormat exportFormat;
+    final ActivityResultLauncher<Intent> createDocument = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
+        if (result.getResultCode() == RESULT_OK && result.getData() != null) export(result.getData().getData());
+    });
+    //export menu item after the per-format term report items
+    static final int WHOLE_DATABASE = 100;
+    static final int CHECK_SUMMARIES = 101;
+    static final int DEFAULTERS = 102;
 
     @SuppressLint({"MissingInflatedId", "WrongViewCast"})
     @Override
@@ -49,8 +68,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         //declaration of sql
-        dbHelper = new DBHelper(this);
-        loadDATA();
+        classViewModel = new ViewModelProvider(this).get(ClassViewModel.class);
         //findViewByID
         floatingActionButton = findViewById(R.id.floatingActionButton);
         recyclerView = findViewById(R.id.recyclerview);
@@ -61,30 +79,41 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
         //toolbar set
         title.setText("Cumilla Modern High School");
         Section.setText("Attendance Management");
-        back.setVisibility(View.INVISIBLE);
-        save.setVisibility(View.INVISIBLE);
+        //nothing to go back to from here, the slot opens the student search instead
+        back.setImageResource(R.drawable.baseline_search_24);
+        back.setOnClickListener(v -> startActivity(new Intent(this, SearchActivity.class)));
+        save.setOnClickListener(v -> exportMenu());
+        save.setOnLongClickListener(v -> {
+            ExportProfileDialog.show(this, null);
+            return true;
+        });
+        progressBar = findViewById(R.id.export_progress);
+        if (savedInstanceState != null) restoreExport(savedInstanceState);
         //RecyclerView
         recyclerView.setHasFixedSize(true);
         layoutManager = new LinearLayoutManager(this);
         recyclerView.setLayoutManager(layoutManager);
-        classAdapter = new ClassAdapter(this, classItems);
+        classAdapter = new ClassAdapter();
 
         recyclerView.setAdapter(classAdapter);
+        loadDATA();
         floatingActionButton.setOnClickListener(view -> fab());
         classAdapter.setOnItemClickListener(position -> gotoItem(position));
     }
 
-    @SuppressLint("Range")
     private void loadDATA() {
-        Cursor cursor = dbHelper.cursor();
-        classItems.clear();
-        while (cursor.moveToNext()) {
-            int id = cursor.getInt(cursor.getColumnIndex(dbHelper.C_ID));
-            String name = cursor.getString(cursor.getColumnIndex(dbHelper.ClassNameKey));
-            String section = cursor.getString(cursor.getColumnIndex(dbHelper.SectionNameKey));
-            classItems.add(new ClassItems(id, name, section));
-        }
+        classViewModel.getClasses().observe(this, classes -> {
+            classItems.clear();
+            classItems.addAll(classes);
+            classAdapter.submitList(classes);
+        });
+    }
 
+    //a roster import from a class may have created classes
+    @Override
+    protected void onRestart() {
+        super.onRestart();
+        classViewModel.reloadClasses();
     }
 
     private void gotoItem(int position) {
@@ -96,6 +125,143 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
         startActivity(i);
     }
 
+    //term report in any format or every mark in the database as CSV, save again while one runs to cancel
+    private void exportMenu() {
+        if (exportJob != null && exportJob.isRunning()) {
+            exportJob.cancel();
+            return;
+        }
+        PopupMenu popup = new PopupMenu(this, save);
+        for (ExportFormat format : ExportFormat.values()) popup.getMenu().add(0, format.ordinal(), format.ordinal(), "Term report, " + format.label);
+        popup.getMenu().add(0, WHOLE_DATABASE, WHOLE_DATABASE, "Whole database, CSV");
+        popup.getMenu().add(0, DEFAULTERS, DEFAULTERS, "Defaulters, all classes");
+        popup.getMenu().add(0, CHECK_SUMMARIES, CHECK_SUMMARIES, "Check attendance summaries");
+        popup.setOnMenuItemClickListener(item -> {
+            if (item.getItemId() == DEFAULTERS) {
+                pickTerm((months, year, month) -> {
+                    Intent i = new Intent(this, DefaulterActivity.class);
+                    i.putExtra("from", months[0]);
+                    i.putExtra("term", year + "-" + month);
+                    startActivity(i);
+                });
+            } else if (item.getItemId() == CHECK_SUMMARIES) {
+                AttendanceRepository.getInstance(this).checkRollup(mismatched -> Toast.makeText(this,
+                        mismatched == 0 ? "Summaries are up to date" : mismatched + " summaries were off and have been rebuilt", Toast.LENGTH_LONG).show(), this::showError);
+            } else if (item.getItemId() == WHOLE_DATABASE) {
+                exportFormat = ExportFormat.CSV;
+                termMonths = null;
+                ExportJob.requestNotificationPermission(this);
+                createDocument.launch(exportFormat.createDocument("Attendance all"));
+            } else {
+                termReport(ExportFormat.values()[item.getItemId()]);
+            }
+            return true;
+        });
+        popup.show();
+    }
+
+    interface OnTermPicked {
+        //months are first days from the term start to this month, month is 1-12
+        void onTermPicked(long[] months, int year, int month);
+    }
+
+    //every class from the picked term start to this month
+    private void termReport(ExportFormat format) {
+        pickTerm((months, year, month) -> {
+            termMonths = months;
+            exportFormat = format;
+            ExportJob.requestNotificationPermission(this);
+            createDocument.launch(format.createDocument("Term report " + year + "-" + month));
+        });
+    }
+
+    private void pickTerm(OnTermPicked onTermPicked) {
+        Calendar today = Calendar.getInstance();
+        MyCalendar myCalendar = new MyCalendar();
+        myCalendar.SetData(today.get(Calendar.YEAR), Calendar.JANUARY, 1);
+        myCalendar.setOnCalendarClickListener((year, month, day) -> {
+            long first = EpochDays.of(year, month + 1, 1);
+            long end = EpochDays.nextMonth(EpochDays.of(today.get(Calendar.YEAR), today.get(Calendar.MONTH) + 1, 1));
+            if (first >= end) {
+                Toast.makeText(this, "Term can't start after this month", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            long[] months = new long[12];
+            int size = 0;
+            for (long m = first; m < end; m = EpochDays.nextMonth(m)) {
+                if (size == months.length) months = Arrays.copyOf(months, size * 2);
+                months[size++] = m;
+            }
+            onTermPicked.onTermPicked(Arrays.copyOf(months, size), year, month + 1);
+        });
+        myCalendar.show(getSupportFragmentManager(), "");
+    }
+
+    private void export(Uri uri) {
+        if (uri == null) return;
+        progressBar.setProgress(0);
+        progressBar.setVisibility(View.VISIBLE);
+        if (termMonths == null) {
+            exportJob = ExportJob.startCsv(this, "Attendance, all classes", exportFormat.separator(), -1, Long.MIN_VALUE, Long.MAX_VALUE, uri, this);
+        } else if (exportFormat != ExportFormat.PDF) {
+            exportJob = ExportJob.startCsv(this, "Term report", exportFormat.separator(), -1, termMonths[0], Long.MAX_VALUE, uri, this);
+        } else {
+            final long[] months = termMonths;
+            final TermReport report = new TermReport(DBHelper.getInstance(this), getCacheDir(), TermReport.defaultWorkers(), ExportProfile.get(this));
+            exportJob = ExportJob.start(this, "Term report", uri, new ExportJob.Writer() {
+                @Override
+                public int countRows() {
+                    return report.countRows(months);
+                }
+
+                @Override
+                public void write(OutputStream out, AttendanceReport.Progress progress) throws Exception {
+                    report.write(months, new BufferedOutputStream(out), progress);
+                }
+            }, this);
+        }
+        Toast.makeText(this, "Exporting, tap save again to cancel", Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    public void onProgress(ExportJob job, int done, int total) {
+        progressBar.setMax(total);
+        progressBar.setProgress(done);
+    }
+
+    @Override
+    public void onFinished(ExportJob job, boolean completed, Exception error) {
+        progressBar.setVisibility(View.GONE);
+        if (completed) Toast.makeText(this, exportFormat.label + " created successfully", Toast.LENGTH_LONG).show();
+        else Toast.makeText(this, error != null ? "Error while exporting: " + error.getMessage() : "Export cancelled", Toast.LENGTH_LONG).show();
+    }
+
+    //the picked format has to outlive a recreation while the document picker is open, a running job is picked up again
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (exportFormat != null) outState.putString("exportFormat", exportFormat.name());
+        if (termMonths != null) outState.putLongArray("termMonths", termMonths);
+        if (exportJob != null && exportJob.isRunning()) outState.putInt("exportJob", exportJob.getId());
+    }
+
+    private void restoreExport(Bundle savedInstanceState) {
+        String format = savedInstanceState.getString("exportFormat");
+        if (format != null) exportFormat = ExportFormat.valueOf(format);
+        termMonths = savedInstanceState.getLongArray("termMonths");
+        exportJob = ExportJob.find(savedInstanceState.getInt("exportJob", -1));
+        if (exportJob != null) {
+            exportJob.setListener(this);
+            progressBar.setVisibility(View.VISIBLE);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (exportJob != null) exportJob.setListener(null);
+    }
+
     @SuppressLint("MissingInflatedId")
     private void fab() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
@@ -128,11 +294,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
     }
 
     private void add(String name, String section) {
-        long cid = dbHelper.addClass(name, section);
-        ClassItems classItems1 = new ClassItems((int) cid, name, section);
-        classItems.add(classItems1);
-        classAdapter.notifyDataSetChanged();
-
+        classViewModel.addClass(name, section, this::showError);
     }
 
     @Override
@@ -146,9 +308,7 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
     }
 
     private void deleteClass(int pos) {
-        dbHelper.removeClass(classItems.get(pos).getId());
-        classItems.remove(pos);
-        classAdapter.notifyItemRemoved((pos));
+        classViewModel.removeClass(pos, this::showError);
     }
 
     private void updateClass(int itemId) {
@@ -183,14 +343,12 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
 
 
     private void editClass(int position, String name, String section) {
-        try {
-            classItems.get(position).setName(name);
-            classItems.get(position).setSection(section);
-            classAdapter.notifyItemChanged(position);
-            dbHelper.editclass(classItems.get(position).getId(), name, section);
-        } catch (Exception e) {
-            Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        classViewModel.editClass(position, name, section, this::showError);
+    }
+
+    //the change was already shown, the view model has put it back by now
+    private void showError(Exception e) {
+        Toast.makeText(this, "Not saved: " + e.getMessage(), Toast.LENGTH_LONG).show();
     }
 
     @Override
@@ -0,0 +1,51 @@
+package com.inan.cmhs.attendance;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+//One month of a class's attendance, one presence and one absence bitmask per student (bit 0 = day 1)
+public class MonthMatrix {
+    final int year, month, days;
+    private final long[] sids;
+    private final int[] present, absent;
+
+    //sids must be ascending, present/absent are parallel to it
+    MonthMatrix(int year, int month, long[] sids, int[] present, int[] absent) {
+        this.year = year;
+        this.month = month;
+        this.days = daysInMonth(year, month);
+        this.sids = sids;
+        this.present = present;
+        this.absent = absent;
+    }
+
+    static int daysInMonth(int year, int month) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, 1);
+        return calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+    }
+
+    private int indexOf(long sid) {
+        return Arrays.binarySearch(sids, sid);
+    }
+
+    public String getStatus(long sid, int day) {
+        int i = indexOf(sid);
+        if (i < 0) return null;
+        int bit = 1 << (day - 1);
+        if ((present[i] & bit) != 0) return "P";
+        if ((absent[i] & bit) != 0) return "A";
+        return null;
+    }
+
+    public int getPresentCount(long sid) {
+        int i = indexOf(sid);
+        return i < 0 ? 0 : Integer.bitCount(present[i]);
+    }
+
+    public int getAbsentCount(long sid) {
+        int i = indexOf(sid);
+        return i < 0 ? 0 : Integer.bitCount(absent[i]);
+    }
+}
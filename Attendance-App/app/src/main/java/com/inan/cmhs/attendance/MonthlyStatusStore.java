@@ -0,0 +1,164 @@
+package com.inan.cmhs.attendance;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.LongSparseArray;
+
+import java.util.List;
+
+import static com.inan.cmhs.attendance.DBHelper.AbsentMaskKey;
+import static com.inan.cmhs.attendance.DBHelper.C_ID;
+import static com.inan.cmhs.attendance.DBHelper.DateKey;
+import static com.inan.cmhs.attendance.DBHelper.MonthKey;
+import static com.inan.cmhs.attendance.DBHelper.PresentMaskKey;
+import static com.inan.cmhs.attendance.DBHelper.S_ID_Status;
+import static com.inan.cmhs.attendance.DBHelper.StatusKey;
+import static com.inan.cmhs.attendance.DBHelper.StatusMonthTableName;
+import static com.inan.cmhs.attendance.DBHelper.StatusTableName;
+
+//Keeps one Status_Month_Table row per student per month instead of one Status_Table row per day.
+//A month is a single row fetch and its totals are a popcount of the masks.
+//Not wired into the app yet, only the tests use it while the daily table stays the store the screens read.
+//The table is made here on first use and isn't part of the app's schema, nothing else writes it, so its masks are only
+//as fresh as the last migrateFromDaily or the saves made through this store.
+public class MonthlyStatusStore implements AttendanceStore {
+    private final DBHelper dbHelper;
+
+    MonthlyStatusStore(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        SQLiteDatabase sqLiteDatabase = dbHelper.getWritableDatabase();
+        sqLiteDatabase.execSQL(DBHelper.Create_Status_Month_Table);
+        sqLiteDatabase.execSQL(DBHelper.Create_Status_Month_Index);
+    }
+
+    @Override
+    public int saveDayStatuses(long cid, long day, List<StudentItems> statuses) {
+        SQLiteDatabase sqLiteDatabase = dbHelper.getWritableDatabase();
+        long month = EpochDays.monthStart(day);
+        long bit = 1L << (day - month);
+        SQLiteStatement create = sqLiteDatabase.compileStatement("INSERT OR IGNORE INTO " + StatusMonthTableName + "(" + S_ID_Status + "," + C_ID + "," + MonthKey + ") VALUES (?,?,?)");
+        SQLiteStatement mark = sqLiteDatabase.compileStatement("UPDATE " + StatusMonthTableName + " SET " + PresentMaskKey + " = (" + PresentMaskKey + " & ?) | ?, " + AbsentMaskKey + " = (" + AbsentMaskKey + " & ?) | ? WHERE " + S_ID_Status + " = ? AND " + MonthKey + " = ?");
+        int saved = 0;
+        sqLiteDatabase.beginTransactionNonExclusive();
+        try {
+            create.bindLong(2, cid);
+            create.bindLong(3, month);
+            mark.bindLong(1, ~bit);
+            mark.bindLong(3, ~bit);
+            mark.bindLong(6, month);
+            for (StudentItems studentItem : statuses) {
+                boolean present = "P".equals(studentItem.getStatus());
+                create.bindLong(1, studentItem.getSid());
+                create.executeInsert();
+                mark.bindLong(2, present ? bit : 0);
+                mark.bindLong(4, present ? 0 : bit);
+                mark.bindLong(5, studentItem.getSid());
+                saved += mark.executeUpdateDelete();
+            }
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+            create.close();
+            mark.close();
+        }
+        return saved;
+    }
+
+    @Override
+    public LongSparseArray<String> getDayStatuses(long cid, long day) {
+        long month = EpochDays.monthStart(day);
+        long bit = 1L << (day - month);
+        Cursor cursor = monthRows(cid, month);
+        LongSparseArray<String> statuses = new LongSparseArray<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                if ((cursor.getLong(1) & bit) != 0) statuses.put(cursor.getLong(0), "P");
+                else if ((cursor.getLong(2) & bit) != 0) statuses.put(cursor.getLong(0), "A");
+            }
+        } finally {
+            cursor.close();
+        }
+        return statuses;
+    }
+
+    @Override
+    public MonthMatrix getMonthMatrix(long cid, int year, int month) {
+        Cursor cursor = monthRows(cid, EpochDays.of(year, month, 1));
+        int size = cursor.getCount();
+        long[] sids = new long[size];
+        int[] present = new int[size];
+        int[] absent = new int[size];
+        try {
+            for (int i = 0; cursor.moveToNext(); i++) {
+                sids[i] = cursor.getLong(0);
+                present[i] = (int) cursor.getLong(1);
+                absent[i] = (int) cursor.getLong(2);
+            }
+        } finally {
+            cursor.close();
+        }
+        return new MonthMatrix(year, month, sids, present, absent);
+    }
+
+    private Cursor monthRows(long cid, long month) {
+        SQLiteDatabase sqLiteDatabase = dbHelper.getReadableDatabase();
+        return sqLiteDatabase.query(StatusMonthTableName, new String[]{S_ID_Status, PresentMaskKey, AbsentMaskKey}, C_ID + " = ? AND " + MonthKey + " = ?", new String[]{String.valueOf(cid), String.valueOf(month)}, null, null, S_ID_Status);
+    }
+
+    //rebuilds Status_Month_Table from Status_Table in one statement, returns the number of month rows
+    public long migrateFromDaily() {
+        SQLiteDatabase sqLiteDatabase = dbHelper.getWritableDatabase();
+        String monthStart = DBHelper.monthStartSql(DateKey);
+        String dayBit = "1 << (" + DateKey + " - Month_Start)";
+        sqLiteDatabase.beginTransactionNonExclusive();
+        try {
+            sqLiteDatabase.delete(StatusMonthTableName, null, null);
+            sqLiteDatabase.execSQL("INSERT INTO " + StatusMonthTableName + "(" + S_ID_Status + "," + C_ID + "," + MonthKey + "," + PresentMaskKey + "," + AbsentMaskKey + ")"
+                    + " SELECT " + S_ID_Status + ", MAX(" + C_ID + "), Month_Start,"
+                    + " SUM(CASE WHEN " + StatusKey + " = 'P' THEN " + dayBit + " ELSE 0 END),"
+                    + " SUM(CASE WHEN " + StatusKey + " = 'P' THEN 0 ELSE " + dayBit + " END)"
+                    + " FROM (SELECT " + S_ID_Status + "," + C_ID + "," + DateKey + "," + StatusKey + ", " + monthStart + " AS Month_Start FROM " + StatusTableName + ")"
+                    + " GROUP BY " + S_ID_Status + ", Month_Start");
+            long rows = DatabaseUtils.queryNumEntries(sqLiteDatabase, StatusMonthTableName);
+            sqLiteDatabase.setTransactionSuccessful();
+            return rows;
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+    }
+
+    //writes every packed mark back out as a Status_Table row, returns the number of day rows written
+    public int exportToDaily() {
+        SQLiteDatabase sqLiteDatabase = dbHelper.getWritableDatabase();
+        SQLiteStatement insert = sqLiteDatabase.compileStatement("INSERT OR REPLACE INTO " + StatusTableName + "(" + S_ID_Status + "," + C_ID + "," + DateKey + "," + StatusKey + ") VALUES (?,?,?,?)");
+        Cursor cursor = sqLiteDatabase.query(StatusMonthTableName, new String[]{S_ID_Status, C_ID, MonthKey, PresentMaskKey, AbsentMaskKey}, null, null, null, null, null);
+        int written = 0;
+        sqLiteDatabase.beginTransactionNonExclusive();
+        try {
+            while (cursor.moveToNext()) {
+                long month = cursor.getLong(2);
+                long present = cursor.getLong(3);
+                long absent = cursor.getLong(4);
+                insert.bindLong(1, cursor.getLong(0));
+                insert.bindLong(2, cursor.getLong(1));
+                for (long marked = present | absent; marked != 0; marked &= marked - 1) {
+                    long bit = Long.lowestOneBit(marked);
+                    insert.bindLong(3, month + Long.numberOfTrailingZeros(bit));
+                    insert.bindString(4, (present & bit) != 0 ? "P" : "A");
+                    insert.executeInsert();
+                    written++;
+                }
+            }
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+            cursor.close();
+            insert.close();
+        }
+        //the triggers keep the rollup and report versions right, the in-memory indexes have to be told
+        if (written > 0) RangeIndex.invalidateAll();
+        return written;
+    }
+}
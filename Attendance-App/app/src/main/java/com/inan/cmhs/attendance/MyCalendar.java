@@ -37,4 +37,7 @@ public class MyCalendar extends DialogFragment {
     String getData(){
         return DateFormat.format("dd.MM.yyyy",calendar).toString();
     }
+    long getDay(){
+        return EpochDays.of(calendar.get(Calendar.YEAR),calendar.get(Calendar.MONTH)+1,calendar.get(Calendar.DAY_OF_MONTH));
+    }
 }
@@ -0,0 +1,282 @@
+package com.inan.cmhs.attendance;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.util.LruCache;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.inan.cmhs.attendance.DBHelper.C_ID;
+import static com.inan.cmhs.attendance.DBHelper.DateKey;
+import static com.inan.cmhs.attendance.DBHelper.S_ID_Status;
+import static com.inan.cmhs.attendance.DBHelper.StatusKey;
+import static com.inan.cmhs.attendance.DBHelper.StatusTableName;
+
+//Present and marked day counts of every student of a class over any range of days. Each student has a Fenwick tree
+//per count over the class's last HISTORY_DAYS of marks, so a range is two prefix sums in O(log days) and a saved mark
+//is a point update instead of a rebuild. Classes are built on first use and kept in a byte-bounded LruCache.
+//Ranges reaching marks outside the window, like a mistyped old date, and classes too big for the cache are counted
+//in SQL instead. Everything runs under the class lock, so a save can't land between a build's read and its put.
+class RangeIndex {
+    //days kept before the last mark, two school years
+    static final int HISTORY_DAYS = 2 * 366;
+    //room for marks after the last one before the class has to be rebuilt
+    static final int HEADROOM_DAYS = 366;
+    private static final int MAX_BYTES = 16 * 1024 * 1024;
+    //a class bigger than this isn't built, it would push most others out
+    private static final int MAX_CLASS_BYTES = MAX_BYTES / 4;
+    private static final byte NONE = 0, PRESENT = 1, ABSENT = 2;
+
+    private static final LruCache<Long, RangeIndex> CACHE = new LruCache<Long, RangeIndex>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(Long cid, RangeIndex index) {
+            return index.bytes();
+        }
+    };
+
+    final long cid;
+    //epoch day of position 0
+    final long firstDay;
+    final int capacity;
+    //marks of the class fall before or after the window, ranges reaching them go to SQL
+    private boolean marksBefore, marksAfter;
+    private long[] sids;
+    private byte[][] statuses;
+    private int[][] presentTree, markedTree;
+
+    private RangeIndex(long cid, long firstDay, int capacity) {
+        this.cid = cid;
+        this.firstDay = firstDay;
+        this.capacity = capacity;
+    }
+
+    //the cached index of the class, built from Status_Table when it isn't there, null when it would be too big
+    static synchronized RangeIndex get(DBHelper dbHelper, long cid) {
+        RangeIndex index = CACHE.get(cid);
+        if (index == null) {
+            index = build(dbHelper, cid);
+            if (index != null) CACHE.put(cid, index);
+        }
+        return index;
+    }
+
+    //{present, marked} over days from up to but not including to, from the index when it holds the range
+    static int[] totals(DBHelper dbHelper, long cid, long sid, long from, long to) {
+        synchronized (RangeIndex.class) {
+            RangeIndex index = get(dbHelper, cid);
+            if (index != null && index.covers(from, to)) return index.totalsLocked(sid, from, to);
+        }
+        return count(dbHelper, "SELECT " + StatusKey + " FROM " + StatusTableName + " WHERE " + C_ID + " = ? AND " + S_ID_Status + " = ? AND " + DateKey + " >= ? AND " + DateKey + " < ?",
+                String.valueOf(cid), String.valueOf(sid), String.valueOf(from), String.valueOf(to));
+    }
+
+    //{present, marked} over the student's last n marked days
+    static int[] lastMarkedDays(DBHelper dbHelper, long cid, long sid, int n) {
+        synchronized (RangeIndex.class) {
+            RangeIndex index = get(dbHelper, cid);
+            if (index != null && !index.marksAfter) {
+                int[] last = index.lastMarkedDaysLocked(sid, n);
+                //fewer than n in the window, the rest may be before it
+                if (last[1] == n || !index.marksBefore) return last;
+            }
+        }
+        return count(dbHelper, "SELECT " + StatusKey + " FROM " + StatusTableName + " WHERE " + C_ID + " = ? AND " + S_ID_Status + " = ? ORDER BY " + DateKey + " DESC LIMIT " + Math.max(0, n),
+                String.valueOf(cid), String.valueOf(sid));
+    }
+
+    //{present, marked} of the statuses a query returns
+    private static int[] count(DBHelper dbHelper, String statuses, String... args) {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT SUM(" + StatusKey + " = 'P'), COUNT(*) FROM (" + statuses + ")", args);
+        try {
+            cursor.moveToFirst();
+            return new int[]{cursor.getInt(0), cursor.getInt(1)};
+        } finally {
+            cursor.close();
+        }
+    }
+
+    //kept in step with DBHelper.saveDayStatuses, a student or day the index can't hold drops the class
+    //called after the save commits, setting a mark the build already read changes nothing
+    static synchronized void onDaySaved(long cid, long day, List<StudentItems> statuses) {
+        RangeIndex index = CACHE.get(cid);
+        if (index == null) return;
+        for (StudentItems studentItem : statuses) {
+            if (!index.set(studentItem.getSid(), day, "P".equals(studentItem.getStatus()) ? PRESENT : ABSENT)) {
+                CACHE.remove(cid);
+                return;
+            }
+        }
+    }
+
+    static synchronized void onSaved(long cid, long sid, long day, String status) {
+        RangeIndex index = CACHE.get(cid);
+        if (index != null && !index.set(sid, day, "P".equals(status) ? PRESENT : ABSENT)) CACHE.remove(cid);
+    }
+
+    static synchronized void invalidate(long cid) {
+        CACHE.remove(cid);
+    }
+
+    //for writes that don't say which class they touch
+    static synchronized void invalidateAll() {
+        CACHE.evictAll();
+    }
+
+    private static RangeIndex build(DBHelper dbHelper, long cid) {
+        long today = EpochDays.today();
+        long earliest, latest;
+        Cursor range = dbHelper.getReadableDatabase().rawQuery("SELECT MIN(" + DateKey + "), MAX(" + DateKey + ") FROM " + StatusTableName + " WHERE " + C_ID + " = ?", new String[]{String.valueOf(cid)});
+        try {
+            range.moveToFirst();
+            earliest = range.isNull(0) ? today : range.getLong(0);
+            latest = range.isNull(1) ? today : range.getLong(1);
+        } finally {
+            range.close();
+        }
+        //a mark dated far ahead can't stretch the window either
+        long last = Math.min(latest, today + HEADROOM_DAYS);
+        long first = Math.min(Math.max(earliest, last - HISTORY_DAYS + 1), last);
+        RangeIndex index = new RangeIndex(cid, first, (int) (last - first + 1 + HEADROOM_DAYS));
+        index.marksBefore = earliest < first;
+        index.marksAfter = latest >= first + index.capacity;
+        String[] args = {String.valueOf(cid), String.valueOf(first), String.valueOf(first + index.capacity)};
+        String where = C_ID + " = ? AND " + DateKey + " >= ? AND " + DateKey + " < ?";
+        long students = DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(), "SELECT COUNT(DISTINCT " + S_ID_Status + ") FROM " + StatusTableName + " WHERE " + where, args);
+        if (bytes(students, index.capacity) > MAX_CLASS_BYTES) return null;
+        int size = 0;
+        long[] sids = new long[64];
+        byte[][] statuses = new byte[64][];
+        Cursor cursor = dbHelper.getReadableDatabase().query(StatusTableName, new String[]{S_ID_Status, DateKey, StatusKey}, where, args, null, null, S_ID_Status);
+        try {
+            while (cursor.moveToNext()) {
+                long sid = cursor.getLong(0);
+                if (size == 0 || sids[size - 1] != sid) {
+                    if (size == sids.length) {
+                        sids = Arrays.copyOf(sids, size * 2);
+                        statuses = Arrays.copyOf(statuses, size * 2);
+                    }
+                    sids[size] = sid;
+                    statuses[size] = new byte[index.capacity];
+                    size++;
+                }
+                statuses[size - 1][(int) (cursor.getLong(1) - first)] = "P".equals(cursor.getString(2)) ? PRESENT : ABSENT;
+            }
+        } finally {
+            cursor.close();
+        }
+        index.sids = Arrays.copyOf(sids, size);
+        index.statuses = Arrays.copyOf(statuses, size);
+        index.presentTree = new int[size][];
+        index.markedTree = new int[size][];
+        for (int i = 0; i < size; i++) {
+            index.presentTree[i] = new int[index.capacity + 1];
+            index.markedTree[i] = new int[index.capacity + 1];
+            byte[] days = index.statuses[i];
+            for (int day = 0; day < index.capacity; day++) {
+                if (days[day] == NONE) continue;
+                index.markedTree[i][day + 1] = 1;
+                if (days[day] == PRESENT) index.presentTree[i][day + 1] = 1;
+            }
+            heapify(index.presentTree[i]);
+            heapify(index.markedTree[i]);
+        }
+        return index;
+    }
+
+    //{present, marked} over days from up to but not including to, only counts marks inside the window
+    int[] totals(long sid, long from, long to) {
+        synchronized (RangeIndex.class) {
+            return totalsLocked(sid, from, to);
+        }
+    }
+
+    private boolean covers(long from, long to) {
+        return !(marksBefore && from < firstDay) && !(marksAfter && to > firstDay + capacity);
+    }
+
+    private int[] totalsLocked(long sid, long from, long to) {
+        int i = Arrays.binarySearch(sids, sid);
+        if (i < 0) return new int[2];
+        int start = clamp(from), end = clamp(to);
+        if (end <= start) return new int[2];
+        return new int[]{prefix(presentTree[i], end) - prefix(presentTree[i], start), prefix(markedTree[i], end) - prefix(markedTree[i], start)};
+    }
+
+    //{present, marked} over the student's last n marked days inside the window
+    int[] lastMarkedDays(long sid, int n) {
+        synchronized (RangeIndex.class) {
+            return lastMarkedDaysLocked(sid, n);
+        }
+    }
+
+    private int[] lastMarkedDaysLocked(long sid, int n) {
+        int i = Arrays.binarySearch(sids, sid);
+        if (i < 0 || n <= 0) return new int[2];
+        int marked = prefix(markedTree[i], capacity);
+        if (marked <= n) return new int[]{prefix(presentTree[i], capacity), marked};
+        //first day of the last n is the (marked - n + 1)-th marked day
+        int start = search(markedTree[i], marked - n + 1);
+        return new int[]{prefix(presentTree[i], capacity) - prefix(presentTree[i], start), n};
+    }
+
+    //false when the student or the day isn't in the index
+    private boolean set(long sid, long day, byte status) {
+        int i = Arrays.binarySearch(sids, sid);
+        long position = day - firstDay;
+        if (i < 0 || position < 0 || position >= capacity) return false;
+        byte old = statuses[i][(int) position];
+        if (old == status) return true;
+        statuses[i][(int) position] = status;
+        if (old == NONE) add(markedTree[i], (int) position, 1);
+        add(presentTree[i], (int) position, (status == PRESENT ? 1 : 0) - (old == PRESENT ? 1 : 0));
+        return true;
+    }
+
+    private int bytes() {
+        return (int) bytes(sids.length, capacity);
+    }
+
+    private static long bytes(long students, int capacity) {
+        return students * (capacity + 2 * 4 * (capacity + 1)) + 64;
+    }
+
+    //position of a day in the window, compared before subtracting so Long.MIN_VALUE and MAX_VALUE work as open ends
+    private int clamp(long day) {
+        if (day <= firstDay) return 0;
+        if (day >= firstDay + capacity) return capacity;
+        return (int) (day - firstDay);
+    }
+
+    //tree holds counts at 1..n, turned into a Fenwick tree in O(n)
+    private static void heapify(int[] tree) {
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+    }
+
+    private static void add(int[] tree, int position, int delta) {
+        if (delta == 0) return;
+        for (int i = position + 1; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    //sum of positions 0 .. end - 1
+    private static int prefix(int[] tree, int end) {
+        int sum = 0;
+        for (int i = end; i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+
+    //the position holding the count-th one, counting from 1
+    private static int search(int[] tree, int count) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            if (position + step < tree.length && tree[position + step] < count) {
+                position += step;
+                count -= tree[position];
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,146 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.utils.PdfMerger;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+//Rendered month reports kept in cacheDir/reports as <cid>-<month>-<version>-<profile>.pdf. Report_Version is bumped
+//by triggers on every write a month's report shows, so a file named with the current version is exactly what a
+//fresh render would give. Unchanged months are copied instead of rendered, the least recently used files go once
+//the folder is over its size cap.
+class ReportCache {
+    static final long MAX_BYTES = 32L * 1024 * 1024;
+    private static final String SUFFIX = ".pdf";
+
+    private final DBHelper dbHelper;
+    private final File dir;
+    private final long maxBytes;
+
+    ReportCache(DBHelper dbHelper, File dir, long maxBytes) {
+        this.dbHelper = dbHelper;
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    static ReportCache get(Context context) {
+        return new ReportCache(DBHelper.getInstance(context), new File(context.getCacheDir(), "reports"), MAX_BYTES);
+    }
+
+    //rows that still have to be rendered for these months, progress only counts those
+    int countRows(long cid, long[] months, ExportProfile profile) {
+        int missing = 0;
+        for (long month : months) {
+            if (!file(cid, month, dbHelper.getReportVersion(cid, month), profile).exists()) missing++;
+        }
+        return (int) dbHelper.countStudents(cid) * missing;
+    }
+
+    //writes the months (first days as epoch days) of a class to out and closes it, one month is copied as it is,
+    //more are merged into a document written with profile
+    void writeMonths(long cid, long[] months, ExportProfile profile, OutputStream out, AttendanceReport.Progress progress) throws IOException {
+        if (months.length == 1) {
+            copy(month(cid, months[0], profile, progress), out);
+            return;
+        }
+        PdfDocument merged = new PdfDocument(new PdfWriter(out, profile.writerProperties()));
+        try {
+            PdfMerger merger = new PdfMerger(merged);
+            for (long month : months) {
+                PdfDocument part = new PdfDocument(new PdfReader(month(cid, month, profile, progress)));
+                merger.merge(part, 1, part.getNumberOfPages());
+                part.close();
+            }
+        } finally {
+            merged.close();
+        }
+    }
+
+    //the month's report for the data as it is now, rendered only when there's no file for the current version
+    File month(long cid, long month, ExportProfile profile, AttendanceReport.Progress progress) throws IOException {
+        //read before rendering, a write during the render bumps it and the next call renders again
+        long version = dbHelper.getReportVersion(cid, month);
+        File file = file(cid, month, version, profile);
+        if (file.exists()) {
+            //lastModified is the LRU order
+            file.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("can't create " + dir);
+        File part = File.createTempFile("render-", ".tmp", dir);
+        try {
+            AttendanceReport report = new AttendanceReport(dbHelper);
+            report.setProgress(progress);
+            report.setProfile(profile);
+            report.writeMonths(cid, new long[]{month}, new BufferedOutputStream(new FileOutputStream(part)));
+            if (!part.renameTo(file)) throw new IOException("can't rename " + part);
+        } finally {
+            part.delete();
+        }
+        removeOldVersions(cid, month, profile, file);
+        trim();
+        return file;
+    }
+
+    void clear() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) file.delete();
+    }
+
+    private File file(long cid, long month, long version, ExportProfile profile) {
+        return new File(dir, cid + "-" + month + "-" + version + "-" + profile.name() + SUFFIX);
+    }
+
+    //an older version of a month can never be asked for again
+    private void removeOldVersions(long cid, long month, ExportProfile profile, File current) {
+        String prefix = cid + "-" + month + "-";
+        String suffix = "-" + profile.name() + SUFFIX;
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.endsWith(suffix) && !file.equals(current)) file.delete();
+        }
+    }
+
+    private synchronized void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long bytes = 0;
+        for (File file : files) bytes += file.length();
+        if (bytes <= maxBytes) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (bytes <= maxBytes) break;
+            //renders still being written
+            if (!file.getName().endsWith(SUFFIX)) continue;
+            long length = file.length();
+            if (file.delete()) bytes -= length;
+        }
+    }
+
+    private static void copy(File file, OutputStream out) throws IOException {
+        try (InputStream in = new FileInputStream(file); OutputStream closing = out) {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) closing.write(buffer, 0, read);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.events.Event;
+import com.itextpdf.kernel.events.IEventHandler;
+import com.itextpdf.kernel.events.PdfDocumentEvent;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+//Fonts and page header shared by every page of a report. Font programs and the logo are parsed once per process,
+//each PdfDocument gets its own fonts and one header XObject per section that every page of the section points at.
+class ReportResources implements IEventHandler {
+    static final String SCHOOL_NAME = "Cumilla Modern High School";
+    //space the header takes above the page margin
+    static final float HEADER_HEIGHT = 36;
+    static final float MARGIN = 20;
+    private static final float LOGO_SIZE = 32;
+
+    private static FontProgram regularProgram, boldProgram;
+    private static ImageData logo;
+
+    private final PdfDocument pdfDocument;
+    private final PageSize pageSize;
+    final PdfFont regular, bold;
+    private PdfImageXObject logoXObject;
+    private PdfFormXObject header;
+
+    //reads the school logo once, reports drawn before this just leave it out
+    static synchronized void loadLogo(Context context) {
+        if (logo != null) return;
+        try (InputStream in = context.getResources().openRawResource(R.mipmap.d)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) bytes.write(buffer, 0, read);
+            logo = ImageDataFactory.create(bytes.toByteArray());
+        } catch (IOException e) {
+            Log.e("ReportResources", "can't read logo", e);
+        }
+    }
+
+    private static synchronized FontProgram fontProgram(boolean bold) throws IOException {
+        //cached = true also keeps them in iText's FontCache
+        if (regularProgram == null) regularProgram = FontProgramFactory.createFont(StandardFonts.HELVETICA, true);
+        if (boldProgram == null) boldProgram = FontProgramFactory.createFont(StandardFonts.HELVETICA_BOLD, true);
+        return bold ? boldProgram : regularProgram;
+    }
+
+    private static synchronized ImageData logo() {
+        return logo;
+    }
+
+    //draws the current header on every page pdfDocument starts from now on
+    ReportResources(PdfDocument pdfDocument, PageSize pageSize) {
+        this.pdfDocument = pdfDocument;
+        this.pageSize = pageSize;
+        try {
+            regular = PdfFontFactory.createFont(fontProgram(false), PdfEncodings.WINANSI);
+            bold = PdfFontFactory.createFont(fontProgram(true), PdfEncodings.WINANSI);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        ImageData logo = logo();
+        if (logo != null) logoXObject = new PdfImageXObject(logo);
+        pdfDocument.addEventHandler(PdfDocumentEvent.START_PAGE, this);
+    }
+
+    //header for the pages started after this call
+    void setHeader(String title) {
+        float width = pageSize.getWidth() - 2 * MARGIN;
+        header = new PdfFormXObject(new Rectangle(width, HEADER_HEIGHT));
+        PdfCanvas canvas = new PdfCanvas(header, pdfDocument);
+        float textLeft = 0;
+        if (logoXObject != null) {
+            canvas.addXObject(logoXObject, LOGO_SIZE, 0, 0, LOGO_SIZE, 0, HEADER_HEIGHT - LOGO_SIZE);
+            textLeft = LOGO_SIZE + 8;
+        }
+        canvas.beginText()
+                .setFontAndSize(bold, 12).moveText(textLeft, HEADER_HEIGHT - 14).showText(SCHOOL_NAME)
+                .setFontAndSize(regular, 9).moveText(0, -14).showText(title)
+                .endText();
+        canvas.moveTo(0, 0.5f).lineTo(width, 0.5f).setLineWidth(0.5f).stroke();
+        canvas.release();
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        if (header == null) return;
+        PdfPage page = ((PdfDocumentEvent) event).getPage();
+        Rectangle box = page.getPageSize();
+        //under the page content, the same XObject is referenced from every page of the section
+        new PdfCanvas(page.newContentStreamBefore(), page.getResources(), pdfDocument)
+                .addXObject(header, MARGIN, box.getTop() - MARGIN - HEADER_HEIGHT)
+                .release();
+    }
+}
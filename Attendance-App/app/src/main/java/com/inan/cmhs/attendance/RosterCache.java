@@ -0,0 +1,92 @@
+package com.inan.cmhs.attendance;
+
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+//Class rosters as DBHelper.readStudents last read them, by _CID, in a byte-bounded LruCache so going back to a class
+//is a copy instead of a query. Every write to Student_Table drops the classes it touches. The read runs outside the
+//lock so a roster query doesn't hold up other classes or the writer, and a roster read while anything was dropped is
+//handed out but not kept, so it can't put back what a write just dropped.
+class RosterCache {
+    private static final int MAX_BYTES = 1024 * 1024;
+
+    private static final LruCache<Long, StudentItems[]> CACHE = new LruCache<Long, StudentItems[]>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(Long cid, StudentItems[] roster) {
+            int bytes = 64;
+            //object headers and fields, strings are two bytes a char
+            for (StudentItems studentItem : roster) bytes += 80 + 2 * (studentItem.getRoll().length() + studentItem.getName().length());
+            return bytes;
+        }
+    };
+    //bumped by every drop, invalidateStudent can't tell which uncached class a read in flight is for
+    private static long invalidations;
+
+    //a fresh list of fresh items every time, callers mark statuses on what they get
+    static ArrayList<StudentItems> get(DBHelper dbHelper, long cid) {
+        long seen;
+        synchronized (RosterCache.class) {
+            StudentItems[] roster = CACHE.get(cid);
+            if (roster != null) {
+                ArrayList<StudentItems> studentItems = new ArrayList<>(roster.length);
+                for (StudentItems studentItem : roster) studentItems.add(new StudentItems(studentItem.getSid(), studentItem.getRoll(), studentItem.getName()));
+                return studentItems;
+            }
+            seen = invalidations;
+        }
+        ArrayList<StudentItems> studentItems = dbHelper.readStudents(cid);
+        //the read items are handed out as they are, the cache keeps its own
+        StudentItems[] copy = copy(studentItems.toArray(new StudentItems[0]));
+        synchronized (RosterCache.class) {
+            if (invalidations == seen) CACHE.put(cid, copy);
+        }
+        return studentItems;
+    }
+
+    static synchronized void invalidate(long cid) {
+        invalidations++;
+        CACHE.remove(cid);
+    }
+
+    //for writes that only know the _SID, the class holding it is the one that's stale
+    static synchronized void invalidateStudent(long sid) {
+        invalidations++;
+        for (Map.Entry<Long, StudentItems[]> entry : CACHE.snapshot().entrySet()) {
+            for (StudentItems studentItem : entry.getValue()) {
+                if (studentItem.getSid() == sid) {
+                    CACHE.remove(entry.getKey());
+                    return;
+                }
+            }
+        }
+    }
+
+    static synchronized void invalidateAll() {
+        invalidations++;
+        CACHE.evictAll();
+    }
+
+    static synchronized String stats() {
+        int hits = CACHE.hitCount(), misses = CACHE.missCount();
+        int requests = hits + misses;
+        return CACHE.snapshot().size() + " classes, " + CACHE.size() / 1024 + " KB, "
+                + hits + " hits, " + misses + " misses (" + (requests == 0 ? 0 : hits * 100 / requests) + "% hit rate), "
+                + CACHE.evictionCount() + " evicted";
+    }
+
+    static synchronized int hitCount() {
+        return CACHE.hitCount();
+    }
+
+    static synchronized int missCount() {
+        return CACHE.missCount();
+    }
+
+    private static StudentItems[] copy(StudentItems[] roster) {
+        StudentItems[] copy = new StudentItems[roster.length];
+        for (int i = 0; i < roster.length; i++) copy[i] = new StudentItems(roster[i].getSid(), roster[i].getRoll(), roster[i].getName());
+        return copy;
+    }
+}
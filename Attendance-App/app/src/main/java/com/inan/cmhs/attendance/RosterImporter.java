@@ -0,0 +1,166 @@
+package com.inan.cmhs.attendance;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import static com.inan.cmhs.attendance.DBHelper.C_ID;
+import static com.inan.cmhs.attendance.DBHelper.C_ID_Student;
+import static com.inan.cmhs.attendance.DBHelper.ClassNameKey;
+import static com.inan.cmhs.attendance.DBHelper.ClassTableName;
+import static com.inan.cmhs.attendance.DBHelper.RollKey;
+import static com.inan.cmhs.attendance.DBHelper.SectionNameKey;
+import static com.inan.cmhs.attendance.DBHelper.StudentNameKey;
+import static com.inan.cmhs.attendance.DBHelper.StudentTableName;
+
+//Reads a roster CSV line by line: roll,name and optionally class,section (rows without them go to the class being
+//imported into, classes that don't exist yet are created). Rows are inserted BATCH to a transaction with one compiled
+//INSERT OR IGNORE, rows that hit UNIQUE(_CID,_ROLL,Student_Name) are counted in the result instead of dropped silently.
+class RosterImporter {
+    static final int BATCH = 500;
+
+    private final DBHelper dbHelper;
+
+    RosterImporter(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    ImportResult importCsv(long cid, InputStream in) {
+        ImportResult result = new ImportResult();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+        SQLiteDatabase sqLiteDatabase = dbHelper.getWritableDatabase();
+        SQLiteStatement insert = sqLiteDatabase.compileStatement("INSERT OR IGNORE INTO " + StudentTableName + "(" + C_ID_Student + "," + RollKey + "," + StudentNameKey + ") VALUES (?,?,?)");
+        SQLiteStatement findClass = sqLiteDatabase.compileStatement("SELECT " + C_ID + " FROM " + ClassTableName + " WHERE " + ClassNameKey + " = ? AND " + SectionNameKey + " = ?");
+        SQLiteStatement addClass = sqLiteDatabase.compileStatement("INSERT INTO " + ClassTableName + "(" + ClassNameKey + "," + SectionNameKey + ") VALUES (?,?)");
+        ArrayList<String> fields = new ArrayList<>(4);
+        HashSet<Long> touched = new HashSet<>();
+        HashMap<String, Long> classIds = new HashMap<>();
+        int line = 0;
+        int batch = 0, batchInserted = 0, batchClasses = 0;
+        sqLiteDatabase.beginTransactionNonExclusive();
+        try {
+            for (String text; (text = reader.readLine()) != null; ) {
+                line++;
+                //excel puts a byte order mark in front of UTF-8 files
+                if (line == 1 && text.startsWith("\uFEFF")) text = text.substring(1);
+                if (text.trim().isEmpty()) continue;
+                split(text, fields);
+                int roll = roll(fields.get(0));
+                if (roll < 0) {
+                    //a header row
+                    if (line > 1) result.invalid(line, "roll \"" + fields.get(0) + "\" isn't a number");
+                    continue;
+                }
+                String name = fields.size() > 1 ? fields.get(1).trim() : "";
+                if (name.isEmpty()) {
+                    result.invalid(line, "no name");
+                    continue;
+                }
+                long rowCid = cid;
+                String className = fields.size() > 2 ? fields.get(2).trim() : "";
+                String sectionName = fields.size() > 3 ? fields.get(3).trim() : "";
+                if (!className.isEmpty() || !sectionName.isEmpty()) {
+                    if (className.isEmpty() || sectionName.isEmpty()) {
+                        result.invalid(line, "class and section go together");
+                        continue;
+                    }
+                    String key = className + '\u0000' + sectionName;
+                    Long known = classIds.get(key);
+                    if (known == null) {
+                        findClass.bindString(1, className);
+                        findClass.bindString(2, sectionName);
+                        try {
+                            known = findClass.simpleQueryForLong();
+                        } catch (SQLiteDoneException e) {
+                            addClass.bindString(1, className);
+                            addClass.bindString(2, sectionName);
+                            known = addClass.executeInsert();
+                            batchClasses++;
+                        }
+                        classIds.put(key, known);
+                    }
+                    rowCid = known;
+                }
+                if (rowCid < 0) {
+                    result.invalid(line, "no class");
+                    continue;
+                }
+                insert.bindLong(1, rowCid);
+                insert.bindLong(2, roll);
+                insert.bindString(3, name);
+                if (insert.executeInsert() == -1) {
+                    result.collision(line, roll, name);
+                } else {
+                    batchInserted++;
+                    touched.add(rowCid);
+                }
+                if (++batch == BATCH) {
+                    sqLiteDatabase.setTransactionSuccessful();
+                    sqLiteDatabase.endTransaction();
+                    result.inserted += batchInserted;
+                    result.classesCreated += batchClasses;
+                    batch = batchInserted = batchClasses = 0;
+                    sqLiteDatabase.beginTransactionNonExclusive();
+                }
+            }
+            sqLiteDatabase.setTransactionSuccessful();
+            result.inserted += batchInserted;
+            result.classesCreated += batchClasses;
+        } catch (IOException | RuntimeException e) {
+            //the batch being written is rolled back, the ones before it stay in
+            result.error = e.getMessage();
+        } finally {
+            sqLiteDatabase.endTransaction();
+            insert.close();
+            findClass.close();
+            addClass.close();
+        }
+        //rolled back batches leave rosters as they were, dropping them anyway only costs a read
+        for (long touchedCid : touched) RosterCache.invalidate(touchedCid);
+        return result;
+    }
+
+    private static int roll(String field) {
+        field = field.trim();
+        if (field.isEmpty() || field.length() > 9) return -1;
+        int roll = 0;
+        for (int i = 0; i < field.length(); i++) {
+            int digit = Character.digit(field.charAt(i), 10);
+            if (digit < 0) return -1;
+            roll = roll * 10 + digit;
+        }
+        return roll;
+    }
+
+    //one CSV line into fields, "" inside quotes is a quote
+    static void split(String line, ArrayList<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+}
@@ -0,0 +1,82 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.ImageView;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+
+import java.util.ArrayList;
+
+//Students of every class by name, roll, class or section, searched as the user types. A result opens its class
+public class SearchActivity extends AppCompatActivity {
+    TextView title,section;
+    ImageView back,save;
+    EditText searchText;
+    ListView resultList;
+    ArrayAdapter<String> adapter;
+    ArrayList<String> listItems=new ArrayList<>();
+    ArrayList<StudentMatch> matches=new ArrayList<>();
+    SearchViewModel searchViewModel;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_search);
+        title=findViewById(R.id.title_tool);
+        section=findViewById(R.id.section_tool);
+        back=findViewById(R.id.back);
+        save=findViewById(R.id.save);
+        searchText=findViewById(R.id.search_text);
+        resultList=findViewById(R.id.searchList);
+        title.setText("Find Student");
+        section.setText("Name, roll, class or section");
+        save.setVisibility(View.INVISIBLE);
+        back.setOnClickListener(v->onBackPressed());
+        adapter=new ArrayAdapter<>(this,android.R.layout.simple_list_item_1,listItems);
+        resultList.setAdapter(adapter);
+        resultList.setOnItemClickListener((parent,view,position,id)->openClass(position));
+        searchViewModel=new ViewModelProvider(this).get(SearchViewModel.class);
+        searchViewModel.getMatches().observe(this,this::showMatches);
+        searchText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchViewModel.search(s.toString());
+            }
+        });
+    }
+
+    private void showMatches(ArrayList<StudentMatch> result) {
+        matches=result;
+        listItems.clear();
+        for (StudentMatch match : result) {
+            listItems.add(match.name+"\n"+match.className+" - "+match.section+", Roll "+match.roll);
+        }
+        adapter.notifyDataSetChanged();
+    }
+
+    private void openClass(int position) {
+        StudentMatch match=matches.get(position);
+        Intent i = new Intent(this, StudentActivity.class);
+        i.putExtra("className", match.className);
+        i.putExtra("sectionName", match.section);
+        i.putExtra("cid", match.cid);
+        startActivity(i);
+    }
+}
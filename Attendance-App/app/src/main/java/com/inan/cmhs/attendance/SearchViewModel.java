@@ -0,0 +1,34 @@
+package com.inan.cmhs.attendance;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+
+//Search results for SearchActivity, a result that comes back after a newer query was typed is dropped
+public class SearchViewModel extends AndroidViewModel {
+    static final int LIMIT = 100;
+    private final AttendanceRepository repository;
+    private final MutableLiveData<ArrayList<StudentMatch>> matches = new MutableLiveData<>();
+    private int query;
+
+    public SearchViewModel(@NonNull Application application) {
+        super(application);
+        repository = AttendanceRepository.getInstance(application);
+    }
+
+    LiveData<ArrayList<StudentMatch>> getMatches() {
+        return matches;
+    }
+
+    void search(String text) {
+        final int current = ++query;
+        repository.searchStudents(text, LIMIT, result -> {
+            if (current == query) matches.setValue(result);
+        });
+    }
+}
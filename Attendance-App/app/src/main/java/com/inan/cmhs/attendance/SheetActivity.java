@@ -1,20 +1,27 @@
 package com.inan.cmhs.attendance;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
-import android.annotation.SuppressLint;
 import android.content.Intent;
-import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.ListView;
+import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import java.text.DateFormatSymbols;
 import java.util.ArrayList;
+import java.util.Locale;
 
-public class SheetActivity extends AppCompatActivity {
+public class SheetActivity extends AppCompatActivity implements ExportJob.Listener {
     private ListView sheetList;
     private ArrayAdapter adapter;
     private long cid;
@@ -22,6 +29,14 @@ public class SheetActivity extends AppCompatActivity {
     Intent intent;
     ImageView back,save;
     private ArrayList listItems=new ArrayList();
+    private long[] months=new long[0];
+    SheetViewModel sheetViewModel;
+    ProgressBar progressBar;
+    ExportJob exportJob;
+    ExportFormat exportFormat;
+    final ActivityResultLauncher<Intent> createDocument = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
+        if (result.getResultCode() == RESULT_OK && result.getData() != null) export(result.getData().getData());
+    });
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -33,13 +48,19 @@ public class SheetActivity extends AppCompatActivity {
         intent = getIntent();
         title.setText("List of Attendance Months");
         section.setVisibility(View.INVISIBLE);
-        save.setVisibility(View.INVISIBLE);
+        save.setOnClickListener(v->exportAll());
+        save.setOnLongClickListener(v -> {
+            ExportProfileDialog.show(this, null);
+            return true;
+        });
+        progressBar=findViewById(R.id.export_progress);
+        if (savedInstanceState != null) restoreExport(savedInstanceState);
         back.setOnClickListener(v->onBackPressed());
         cid=intent.getLongExtra("cid", -1);
-        System.out.println(cid);
         sheetList=findViewById(R.id.sheetList);
         adapter=new ArrayAdapter(this,R.layout.sheet_list,R.id.data_list_item,listItems);
         sheetList.setAdapter(adapter);
+        sheetViewModel=new ViewModelProvider(this).get(SheetViewModel.class);
         loadListItems();
         sheetList.setOnItemClickListener((parent, view, position, id)->openSheetActivity(position));
     }
@@ -50,33 +71,109 @@ public class SheetActivity extends AppCompatActivity {
         int[] rollArray=intent.getIntArrayExtra("rollArray");
         String[] nameArray=intent.getStringArrayExtra("nameArray");
         Intent i = new Intent(this,SheetHalkhata.class);
+        i.putExtra("cid",cid);
         i.putExtra("idArray",idArray);
         i.putExtra("nameArray",nameArray);
         i.putExtra("rollArray",rollArray);
-        i.putExtra("month",String.valueOf(listItems.get(position)));
+        i.putExtra("month",monthName(months[position]));
+        i.putExtra("year",EpochDays.year(months[position]));
+        i.putExtra("monthOfYear",EpochDays.month(months[position]));
 //        i.putExtra("subtext",)
         startActivity(i);
     }
 
+    //every month of the class in one file, save again while it runs to cancel
+    private void exportAll() {
+        if (exportJob != null && exportJob.isRunning()) {
+            exportJob.cancel();
+            return;
+        }
+        if (months.length == 0) {
+            Toast.makeText(this, "No attendance to export", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        ExportFormat.pick(this, save, format -> {
+            exportFormat = format;
+            ExportJob.requestNotificationPermission(this);
+            createDocument.launch(format.createDocument("Attendance " + monthName(months[0]) + " - " + monthName(months[months.length - 1])));
+        }, () -> AttendancePrintAdapter.print(this, cid, months, "Attendance " + monthName(months[0]) + " - " + monthName(months[months.length - 1])));
+    }
+
+    private void export(Uri uri) {
+        if (uri == null) return;
+        progressBar.setProgress(0);
+        progressBar.setVisibility(View.VISIBLE);
+        String name = "Attendance, " + months.length + " months";
+        if (exportFormat == ExportFormat.PDF) exportJob = ExportJob.start(this, name, cid, months, uri, this);
+        else exportJob = ExportJob.startCsv(this, name, exportFormat.separator(), cid, Long.MIN_VALUE, Long.MAX_VALUE, uri, this);
+        Toast.makeText(this, "Exporting, tap save again to cancel", Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    public void onProgress(ExportJob job, int done, int total) {
+        progressBar.setMax(total);
+        progressBar.setProgress(done);
+    }
+
+    @Override
+    public void onFinished(ExportJob job, boolean completed, Exception error) {
+        progressBar.setVisibility(View.GONE);
+        if (completed) Toast.makeText(this, exportFormat.label + " created successfully", Toast.LENGTH_LONG).show();
+        else Toast.makeText(this, error != null ? "Error while exporting" : "Export cancelled", Toast.LENGTH_SHORT).show();
+    }
+
+    //the picked format has to outlive a recreation while the document picker is open, a running job is picked up again
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (exportFormat != null) outState.putString("exportFormat", exportFormat.name());
+        outState.putLongArray("months", months);
+        if (exportJob != null && exportJob.isRunning()) outState.putInt("exportJob", exportJob.getId());
+    }
+
+    private void restoreExport(Bundle savedInstanceState) {
+        String format = savedInstanceState.getString("exportFormat");
+        if (format != null) exportFormat = ExportFormat.valueOf(format);
+        //months come back from the view model later, the picker's result can arrive first
+        long[] saved = savedInstanceState.getLongArray("months");
+        if (saved != null) months = saved;
+        exportJob = ExportJob.find(savedInstanceState.getInt("exportJob", -1));
+        if (exportJob != null) {
+            exportJob.setListener(this);
+            progressBar.setVisibility(View.VISIBLE);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (exportJob != null) exportJob.setListener(null);
+    }
+
     private void loadListItems() {
-        Cursor cursor=new DBHelper(this).getMonths(cid);
-        while(cursor.moveToNext()){
-            @SuppressLint("Range") String date=cursor.getString(cursor.getColumnIndex(DBHelper.DateKey));
-            String mayhem="";
-            if(date.substring(3,5).contains("01"))      mayhem="January";
-            else if(date.substring(3,5).contains("02")) mayhem="February";
-            else if(date.substring(3,5).contains("03")) mayhem="March";
-            else if(date.substring(3,5).contains("04")) mayhem="April";
-            else if(date.substring(3,5).contains("05")) mayhem="May";
-            else if(date.substring(3,5).contains("06")) mayhem="June";
-            else if(date.substring(3,5).contains("07")) mayhem="July";
-            else if(date.substring(3,5).contains("08")) mayhem="August";
-            else if(date.substring(3,5).contains("09")) mayhem="September";
-            else if(date.substring(3,5).contains("10")) mayhem="October";
-            else if(date.substring(3,5).contains("11")) mayhem="November";
-            else if(date.substring(3,5).contains("12")) mayhem="December";
+        sheetViewModel.getMonths(cid).observe(this,result->{
+            months=result;
+            listItems.clear();
+            for(long month:months){
+                listItems.add(monthName(month));
+            }
+            adapter.notifyDataSetChanged();
+            //the percentages come from Status_Rollup after the names are up
+            sheetViewModel.loadMonthPercents(cid,months);
+        });
+        sheetViewModel.getMonthPercents().observe(this,this::showPercents);
+    }
 
-            listItems.add(mayhem+" "+date.substring(6));
+    private void showPercents(int[] percents) {
+        if (percents.length != months.length) return;
+        listItems.clear();
+        for (int i = 0; i < months.length; i++) {
+            listItems.add(percents[i] >= 0 ? monthName(months[i]) + "  (" + percents[i] + "% present)" : monthName(months[i]));
         }
+        adapter.notifyDataSetChanged();
+    }
+
+    private static String monthName(long month) {
+        return DateFormatSymbols.getInstance(Locale.ENGLISH).getMonths()[EpochDays.month(month)-1]+" "+EpochDays.year(month);
     }
 }
\ No newline at end of file
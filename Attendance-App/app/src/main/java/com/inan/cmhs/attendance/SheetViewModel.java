@@ -0,0 +1,48 @@
+package com.inan.cmhs.attendance;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+//Month list and month percentages for SheetActivity and the month matrix for SheetHalkhata
+public class SheetViewModel extends AndroidViewModel {
+    private final AttendanceRepository repository;
+    private final MutableLiveData<long[]> months = new MutableLiveData<>();
+    private final MutableLiveData<MonthMatrix> matrix = new MutableLiveData<>();
+    private final MutableLiveData<int[]> percents = new MutableLiveData<>();
+    private long monthsCid = -1;
+    private boolean matrixRequested;
+
+    public SheetViewModel(@NonNull Application application) {
+        super(application);
+        repository = AttendanceRepository.getInstance(application);
+    }
+
+    LiveData<long[]> getMonths(long cid) {
+        if (monthsCid != cid) {
+            monthsCid = cid;
+            repository.getMonths(cid, months::setValue);
+        }
+        return months;
+    }
+
+    //one value per month of getMonths, -1 for none, filled by loadMonthPercents
+    LiveData<int[]> getMonthPercents() {
+        return percents;
+    }
+
+    void loadMonthPercents(long cid, long[] months) {
+        repository.getMonthPercents(cid, months, percents::setValue);
+    }
+
+    LiveData<MonthMatrix> getMonthMatrix(long cid, int year, int month) {
+        if (!matrixRequested) {
+            matrixRequested = true;
+            repository.getMonthMatrix(cid, year, month, matrix::setValue);
+        }
+        return matrix;
+    }
+}
@@ -1,14 +1,17 @@
 package com.inan.cmhs.attendance;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.annotation.SuppressLint;
 import android.content.Intent;
-import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
@@ -33,24 +36,28 @@ public class StudentActivity extends AppCompatActivity {
     StudentAdapter studentAdapter;
     Button cancel,add;
     ArrayList<StudentItems> studentItems=new ArrayList<>();
-    DBHelper dbHelper=new DBHelper(this);
+    StudentViewModel studentViewModel;
     TextView dialoge_title;
     FloatingActionButton floatingActionButton,fab_date,fab_sheet;
     RecyclerView recyclerView;
     RecyclerView.LayoutManager layoutManager;
     public  long cid;
     ImageView back,save;
+    final ActivityResultLauncher<String[]> openRoster = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importRoster);
     @SuppressLint({"ResourceType", "WrongViewCast"})
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_student);
+        studentViewModel=new ViewModelProvider(this).get(StudentViewModel.class);
+        long day=studentViewModel.getDay();
+        myCalendar.SetData(EpochDays.year(day),EpochDays.month(day)-1,EpochDays.dayOfMonth(day));
         //recyclerview
         recyclerView=findViewById(R.id.studentrecycle);
         recyclerView.setHasFixedSize(true);
         layoutManager = new LinearLayoutManager(this);
         recyclerView.setLayoutManager(layoutManager);
-        studentAdapter=new StudentAdapter(this,studentItems);
+        studentAdapter=new StudentAdapter(this);
         recyclerView.setAdapter(studentAdapter);
         //toolbar
         title=findViewById(R.id.title_tool);
@@ -70,7 +77,6 @@ public class StudentActivity extends AppCompatActivity {
             section.setText("Section: " + intent_section);
         }
         Load();
-        loadStatus();
         back.setOnClickListener(v->onBackPressed());
         save.setOnClickListener(v->saveStatus());
         floatingActionButton=findViewById(R.id.fab_student);
@@ -78,10 +84,24 @@ public class StudentActivity extends AppCompatActivity {
         fab_sheet=findViewById(R.id.fab_sheet);
         fab_sheet.setOnClickListener(v->sheet());
         floatingActionButton.setOnClickListener(v->showAddStudentDialog());
+        floatingActionButton.setOnLongClickListener(v->{
+            openRoster.launch(new String[]{"text/*", "application/csv", "application/vnd.ms-excel"});
+            return true;
+        });
         fab_date.setOnClickListener(v->showDateDialog());
         studentAdapter.setOnItemClickListener(position->makechange(position));
     }
 
+    //CSV of roll,name[,class,section], long press on the add button
+    private void importRoster(Uri uri) {
+        if (uri == null) return;
+        Toast.makeText(this, "Importing students...", Toast.LENGTH_SHORT).show();
+        studentViewModel.importRoster(uri, result -> {
+            if (isFinishing()) return;
+            new AlertDialog.Builder(this).setTitle("Import").setMessage(result.summary()).setPositiveButton("OK", null).show();
+        });
+    }
+
     private void sheet() {
         long[] idArray = new long[studentItems.size()];
         String[] nameArray = new String[studentItems.size()];
@@ -97,7 +117,6 @@ public class StudentActivity extends AppCompatActivity {
         }
         Intent i = new Intent(this,SheetActivity.class);
         i.putExtra("cid",cid);
-        System.out.println("Intent Here "+cid);
         i.putExtra("idArray",idArray);
         i.putExtra("nameArray",nameArray);
         i.putExtra("rollArray",rollArray);
@@ -105,23 +124,11 @@ public class StudentActivity extends AppCompatActivity {
     }
 
     private void saveStatus() {
-        for(StudentItems studentItem: studentItems){
-            String status= studentItem.getStatus();
-            long val=dbHelper.addStatus(studentItem.getSid(),cid, myCalendar.getData(),status);
-            if(status != "P") status="A";
-            Toast.makeText(this,"Attendance Succsesfully Added",Toast.LENGTH_SHORT);
-            if(val==-1) dbHelper.deleteStatus(studentItem.getSid(),cid, myCalendar.getData());dbHelper.updateStatus(studentItem.getSid(), myCalendar.getData(),status);
-        }
+        studentViewModel.saveStatus(saved->Toast.makeText(getApplicationContext(),"Attendance Succsesfully Added",Toast.LENGTH_SHORT).show(),this::showError);
     }
 
     private void loadStatus() {
-        for(StudentItems studentItems1: studentItems){
-            String status=dbHelper.getStatus(studentItems1.getSid(), myCalendar.getData());
-            System.out.println("Checkpoint No. 0002 loadStatus()");
-            System.out.println(status);
-            if(status!=null) studentItems1.setStatus(status);
-        }
-        studentAdapter.notifyDataSetChanged();
+        studentViewModel.setDay(myCalendar.getDay());
     }
     private void showDateDialog() {
         myCalendar.show(getSupportFragmentManager(),"");
@@ -130,9 +137,8 @@ public class StudentActivity extends AppCompatActivity {
         else myCalendar.setOnCalendarClickListener(this::OnOKClicked);
     }
     private void OnOKClicked(int year, int month, int day) {
-        String bt=myCalendar.getData();
-        myCalendar.SetData(year, month, day);
         myCalendar.SetData(year, month, day);
+        loadStatus();
     }
     private void OnOKClickedtwo(int year, int month, int day) {
         String bt=myCalendar.getData();
@@ -145,31 +151,36 @@ public class StudentActivity extends AppCompatActivity {
         section.setText(mota+" | " + bt);
     }
 
-    @SuppressLint("Range")
     public void Load() {
-        Cursor cursor = dbHelper.cursor_student(cid);
-        studentItems.clear();
-        while (cursor.moveToNext()) {
-            long sid = cursor.getLong(cursor.getColumnIndex(dbHelper.S_ID));
-            int roll = cursor.getInt(cursor.getColumnIndex(dbHelper.RollKey));
-            String name = cursor.getString(cursor.getColumnIndex(dbHelper.StudentNameKey));
-            studentItems.add(new StudentItems(sid, String.valueOf(roll),name));
-        }
+        studentViewModel.getStudents(cid).observe(this,students->{
+            studentItems.clear();
+            studentItems.addAll(students);
+            studentAdapter.submitList(students);
+        });
     }
     @Override
     public boolean onContextItemSelected(@NonNull MenuItem item) {
         if(item.getItemId()==0){
             updateStudent(item.getGroupId());
+        }else if(item.getItemId()==2){
+            showDetail(item.getGroupId());
         }else{
             deleteStudent(item.getGroupId());
         }
         return super.onContextItemSelected(item);
     }
 
+    private void showDetail(int position) {
+        Intent i = new Intent(this,StudentDetailActivity.class);
+        i.putExtra("cid",cid);
+        i.putExtra("sid",studentItems.get(position).getSid());
+        i.putExtra("name",studentItems.get(position).getName());
+        i.putExtra("roll",studentItems.get(position).getRoll());
+        startActivity(i);
+    }
+
     private void deleteStudent(int groupId) {
-        dbHelper.removeStudent(studentItems.get(groupId).getSid());
-        studentItems.remove(groupId);
-        studentAdapter.notifyItemRemoved(groupId);
+        studentViewModel.removeStudent(groupId,this::showError);
     }
     @SuppressLint("MissingInflatedId")
     public void updateStudent(int itemId) {
@@ -195,21 +206,14 @@ public class StudentActivity extends AppCompatActivity {
 
     private void editClass(int position,String roll, String Name) {
         try {
-            studentItems.get(position).setRoll(roll);
-            studentItems.get(position).setName(Name);
-            studentAdapter.notifyItemChanged(position);
-            dbHelper.editstudent(studentItems.get(position).getSid(), Integer.parseInt(roll), Name);
+            studentViewModel.editStudent(position, roll, Name, this::showError);
         }catch (Exception e){
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
 
     public void makechange(int position) {
-        String status=studentItems.get(position).getStatus();
-        if(status.equals("P")) status="A";
-        else status="P";
-        studentItems.get(position).setStatus(status);
-        studentAdapter.notifyDataSetChanged();
+        studentViewModel.toggleStatus(position);
     }
 
 
@@ -242,8 +246,16 @@ public class StudentActivity extends AppCompatActivity {
     private void add() {
         String vroll=roll.getText().toString();
         String vname=Name.getText().toString();
-        long sid = dbHelper.addStudent(cid,Integer.parseInt(vroll),vname);
-        studentItems.add(new StudentItems(sid,vroll,vname));
+        try {
+            studentViewModel.addStudent(vroll,vname,this::showError);
+        }catch (NumberFormatException e){
+            Toast.makeText(this, "Roll must be a number", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    //the change was already shown, the view model has put it back by now
+    private void showError(Exception e) {
+        Toast.makeText(this, "Not saved: " + e.getMessage(), Toast.LENGTH_LONG).show();
     }
 
 }
\ No newline at end of file
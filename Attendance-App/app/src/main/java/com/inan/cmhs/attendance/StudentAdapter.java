@@ -1,7 +1,6 @@
 package com.inan.cmhs.attendance;
 
 import android.content.Context;
-import android.graphics.Color;
 import android.view.ContextMenu;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,13 +10,38 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
-public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentViewHolder> {
+import java.util.List;
 
-    ArrayList<StudentItems> studentItems=null;
-    Context context;
+public class StudentAdapter extends ListAdapter<StudentItems, StudentAdapter.StudentViewHolder> {
+
+    //payload for a card whose roll and name are unchanged, only the status needs rebinding
+    private static final Object PAYLOAD_STATUS = new Object();
+
+    private static final DiffUtil.ItemCallback<StudentItems> DIFF = new DiffUtil.ItemCallback<StudentItems>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull StudentItems oldItem, @NonNull StudentItems newItem) {
+            return oldItem.getSid() == newItem.getSid();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull StudentItems oldItem, @NonNull StudentItems newItem) {
+            return oldItem.getRoll().equals(newItem.getRoll())
+                    && oldItem.getName().equals(newItem.getName())
+                    && oldItem.getStatus().equals(newItem.getStatus());
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull StudentItems oldItem, @NonNull StudentItems newItem) {
+            if (oldItem.getRoll().equals(newItem.getRoll()) && oldItem.getName().equals(newItem.getName())) return PAYLOAD_STATUS;
+            return null;
+        }
+    };
+
+    private final int presentColor, absentColor, normalColor;
 
     private OnItemClickListener onItemClickListener;
 
@@ -31,9 +55,12 @@ public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentV
 
 
 
-    public StudentAdapter(Context context, ArrayList<StudentItems> studentItems) {
-        this.context=context;
-        this.studentItems = studentItems;
+    public StudentAdapter(Context context) {
+        super(DIFF);
+        setHasStableIds(true);
+        presentColor = ContextCompat.getColor(context, R.color.Present);
+        absentColor = ContextCompat.getColor(context, R.color.Absent);
+        normalColor = ContextCompat.getColor(context, R.color.normal);
     }
 
     public static class StudentViewHolder extends RecyclerView.ViewHolder implements View.OnCreateContextMenuListener {
@@ -57,6 +84,7 @@ public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentV
         public void onCreateContextMenu(ContextMenu menu, View v, ContextMenu.ContextMenuInfo menuInfo) {
             menu.add(getAdapterPosition(),0,0,"Edit");
             menu.add(getAdapterPosition(),1,0,"Delete");
+            menu.add(getAdapterPosition(),2,0,"Attendance");
         }
     }
     @NonNull
@@ -66,31 +94,35 @@ public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentV
         return new StudentAdapter.StudentViewHolder(view,onItemClickListener);
     }
 
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getSid();
+    }
+
     @Override
     public void onBindViewHolder(@NonNull StudentViewHolder holder, int position) {
-        holder.roll.setText(studentItems.get(position).getRoll());
-        holder.name.setText(studentItems.get(position).getName());
-        holder.status.setText(studentItems.get(position).getStatus());
-        holder.cardView.setCardBackgroundColor(getColor(position));
+        holder.roll.setText(getItem(position).getRoll());
+        holder.name.setText(getItem(position).getName());
+        bindStatus(holder, getItem(position));
     }
 
-    private int getColor(int position) {
-        String status=studentItems.get(position).getStatus();
-        if(status.equals("P")){
-            return Color.parseColor("#"+Integer.toHexString(ContextCompat.getColor(context,R.color.Present)));
-        }else if(status.equals("A")){
-            return Color.parseColor("#"+Integer.toHexString(ContextCompat.getColor(context,R.color.Absent)));
-        }
-        return Color.parseColor("#"+Integer.toHexString(ContextCompat.getColor(context,R.color.normal)));
+    @Override
+    public void onBindViewHolder(@NonNull StudentViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_STATUS)) bindStatus(holder, getItem(position));
+        else onBindViewHolder(holder, position);
     }
 
+    private void bindStatus(StudentViewHolder holder, StudentItems studentItem) {
+        holder.status.setText(studentItem.getStatus());
+        holder.cardView.setCardBackgroundColor(getColor(studentItem.getStatus()));
+    }
 
-    @Override
-    public int getItemCount() {
-        if(studentItems!=null) {
-            return studentItems.size();
-        }else {
-            return -1;
+    private int getColor(String status) {
+        if(status.equals("P")){
+            return presentColor;
+        }else if(status.equals("A")){
+            return absentColor;
         }
+        return normalColor;
     }
 }
@@ -0,0 +1,87 @@
+package com.inan.cmhs.attendance;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+
+import java.util.Locale;
+
+//Attendance percentage, absence streaks and absences per weekday of one student, see AttendanceAnalytics
+public class StudentDetailActivity extends AppCompatActivity {
+    TextView title,section,percent,days,recent,range,streaks,weekdays;
+    long rangeFrom;
+    ImageView back,save;
+    StudentDetailViewModel studentDetailViewModel;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_student_detail);
+        title=findViewById(R.id.title_tool);
+        section=findViewById(R.id.section_tool);
+        back=findViewById(R.id.back);
+        save=findViewById(R.id.save);
+        percent=findViewById(R.id.detail_percent);
+        days=findViewById(R.id.detail_days);
+        recent=findViewById(R.id.detail_recent);
+        range=findViewById(R.id.detail_range);
+        streaks=findViewById(R.id.detail_streaks);
+        weekdays=findViewById(R.id.detail_weekdays);
+        Intent intent=getIntent();
+        long cid=intent.getLongExtra("cid",-1);
+        long sid=intent.getLongExtra("sid",-1);
+        title.setText(intent.getStringExtra("name"));
+        section.setText("Roll: "+intent.getStringExtra("roll"));
+        save.setVisibility(View.INVISIBLE);
+        back.setOnClickListener(v->onBackPressed());
+        studentDetailViewModel=new ViewModelProvider(this).get(StudentDetailViewModel.class);
+        studentDetailViewModel.getStats(cid,sid).observe(this,this::showStats);
+        studentDetailViewModel.getRecent().observe(this,totals->{
+            if (totals[1] > 0) recent.setText("Last "+totals[1]+" school days: "+totals[0]*100/totals[1]+"% present");
+        });
+        studentDetailViewModel.getRange().observe(this,totals->range.setText(totals[1] > 0
+                ? "Present "+totals[0]+" of "+totals[1]+" days ("+totals[0]*100/totals[1]+"%)\nTap to pick another range"
+                : "Nothing marked in that range\nTap to pick another range"));
+        range.setOnClickListener(v->pickRange());
+    }
+
+    //start date, then end date, both included
+    private void pickRange() {
+        MyCalendar start=new MyCalendar();
+        start.setOnCalendarClickListener((year,month,day)->{
+            rangeFrom=EpochDays.of(year,month+1,day);
+            MyCalendar end=new MyCalendar();
+            end.setOnCalendarClickListener((endYear,endMonth,endDay)->{
+                long rangeTo=EpochDays.of(endYear,endMonth+1,endDay)+1;
+                if (rangeTo <= rangeFrom) Toast.makeText(this,"The end date is before the start",Toast.LENGTH_SHORT).show();
+                else studentDetailViewModel.loadRange(rangeFrom,rangeTo);
+            });
+            end.show(getSupportFragmentManager(),"");
+        });
+        start.show(getSupportFragmentManager(),"");
+    }
+
+    private void showStats(AttendanceAnalytics.Stats stats) {
+        if (stats == null || stats.marked == 0) {
+            percent.setText("-");
+            days.setText("No attendance taken yet");
+            return;
+        }
+        percent.setText(stats.percent()+"%");
+        days.setText("Present "+stats.present+" of "+stats.marked+" days, absent "+stats.absent());
+        streaks.setText("Longest absence: "+stats.longestAbsence+" days\nCurrent absence: "+stats.currentAbsence+" days");
+        StringBuilder text=new StringBuilder();
+        for (int weekday = 0; weekday < 7; weekday++) {
+            if (stats.markedByWeekday[weekday] == 0) continue;
+            if (text.length() > 0) text.append('\n');
+            text.append(String.format(Locale.US, "%s   absent %d of %d", AttendanceAnalytics.WEEKDAYS[weekday], stats.absentByWeekday[weekday], stats.markedByWeekday[weekday]));
+        }
+        weekdays.setText(text);
+    }
+}
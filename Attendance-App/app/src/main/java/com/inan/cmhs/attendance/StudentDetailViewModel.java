@@ -0,0 +1,50 @@
+package com.inan.cmhs.attendance;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+//One student's analytics for StudentDetailActivity, loaded once per student
+public class StudentDetailViewModel extends AndroidViewModel {
+    static final int RECENT_DAYS = 40;
+    private final AttendanceRepository repository;
+    private final MutableLiveData<AttendanceAnalytics.Stats> stats = new MutableLiveData<>();
+    private final MutableLiveData<int[]> recent = new MutableLiveData<>();
+    private final MutableLiveData<int[]> range = new MutableLiveData<>();
+    private long cid = -1;
+    private long sid = -1;
+
+    public StudentDetailViewModel(@NonNull Application application) {
+        super(application);
+        repository = AttendanceRepository.getInstance(application);
+    }
+
+    //the value stays null when the student has no marks yet
+    LiveData<AttendanceAnalytics.Stats> getStats(long cid, long sid) {
+        if (this.sid != sid) {
+            this.cid = cid;
+            this.sid = sid;
+            repository.getStudentStats(cid, sid, stats::setValue);
+            repository.getLastMarkedDays(cid, sid, RECENT_DAYS, recent::setValue);
+        }
+        return stats;
+    }
+
+    //{present, marked} of the last RECENT_DAYS marked days, after getStats
+    LiveData<int[]> getRecent() {
+        return recent;
+    }
+
+    //{present, marked} of the last range asked for with loadRange
+    LiveData<int[]> getRange() {
+        return range;
+    }
+
+    //days from up to but not including to
+    void loadRange(long from, long to) {
+        repository.getRangeTotals(cid, sid, from, to, range::setValue);
+    }
+}
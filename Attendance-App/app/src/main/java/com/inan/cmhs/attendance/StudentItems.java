@@ -42,4 +42,11 @@ public class StudentItems {
     public void setStatus(String status) {
         this.status = status;
     }
+
+    //lists handed to StudentAdapter are diffed, so changes go into a copy instead of the shown item
+    public StudentItems withStatus(String status) {
+        StudentItems copy = new StudentItems(sid, roll, name);
+        copy.status = status;
+        return copy;
+    }
 }
@@ -0,0 +1,17 @@
+package com.inan.cmhs.attendance;
+
+//A student found by DBHelper.searchStudents, with the class it's in
+public class StudentMatch {
+    final long sid;
+    final int cid, roll;
+    final String name, className, section;
+
+    StudentMatch(long sid, int cid, int roll, String name, String className, String section) {
+        this.sid = sid;
+        this.cid = cid;
+        this.roll = roll;
+        this.name = name;
+        this.className = className;
+        this.section = section;
+    }
+}
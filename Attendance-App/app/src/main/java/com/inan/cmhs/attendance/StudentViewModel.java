@@ -0,0 +1,151 @@
+package com.inan.cmhs.attendance;
+
+import android.app.Application;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+
+//Roster and the marks being taken for one class-day, unsaved marks survive rotation.
+//Every change publishes a new list of new items so StudentAdapter can diff against the old one.
+public class StudentViewModel extends AndroidViewModel {
+    private final AttendanceRepository repository;
+    private final MutableLiveData<ArrayList<StudentItems>> students = new MutableLiveData<>();
+    private long cid = -1;
+    private long day;
+
+    public StudentViewModel(@NonNull Application application) {
+        super(application);
+        repository = AttendanceRepository.getInstance(application);
+        Calendar calendar = Calendar.getInstance();
+        day = EpochDays.of(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+
+    LiveData<ArrayList<StudentItems>> getStudents(final long cid) {
+        if (this.cid != cid) {
+            this.cid = cid;
+            loadStudents();
+        }
+        return students;
+    }
+
+    private void loadStudents() {
+        repository.getStudents(cid, roster -> {
+            students.setValue(roster);
+            loadStatus();
+        });
+    }
+
+    //unsaved marks are dropped, the roster and the day's saved marks are read again afterwards
+    void importRoster(Uri uri, AttendanceRepository.Callback<ImportResult> callback) {
+        repository.importRoster(cid, uri, result -> {
+            loadStudents();
+            callback.onResult(result);
+        });
+    }
+
+    long getDay() {
+        return day;
+    }
+
+    void setDay(long day) {
+        this.day = day;
+        loadStatus();
+    }
+
+    private void loadStatus() {
+        final long day = this.day;
+        repository.getDayStatuses(cid, day, statuses -> {
+            ArrayList<StudentItems> studentItems = students.getValue();
+            //a newer day was picked while this one was loading
+            if (studentItems == null || day != this.day) return;
+            ArrayList<StudentItems> marked = new ArrayList<>(studentItems.size());
+            for (StudentItems studentItem : studentItems) {
+                String status = statuses.get(studentItem.getSid());
+                if (status == null) status = "";
+                marked.add(status.equals(studentItem.getStatus()) ? studentItem : studentItem.withStatus(status));
+            }
+            students.setValue(marked);
+        });
+    }
+
+    void toggleStatus(int position) {
+        ArrayList<StudentItems> studentItems = students.getValue();
+        if (studentItems == null) return;
+        ArrayList<StudentItems> changed = new ArrayList<>(studentItems);
+        StudentItems studentItem = changed.get(position);
+        changed.set(position, studentItem.withStatus(studentItem.getStatus().equals("P") ? "A" : "P"));
+        students.setValue(changed);
+    }
+
+    void saveStatus(AttendanceRepository.Callback<Integer> callback, AttendanceRepository.ErrorCallback onError) {
+        ArrayList<StudentItems> studentItems = students.getValue();
+        if (studentItems == null) return;
+        //published lists are never changed afterwards, so this one is a safe snapshot for the save
+        repository.saveDayStatuses(cid, day, studentItems, callback, onError);
+    }
+
+    //a write that fails puts the roster back as it was before it and goes to onError
+    void addStudent(final String roll, final String name, final AttendanceRepository.ErrorCallback onError) {
+        repository.addStudent(cid, Integer.parseInt(roll), name, sid -> {
+            ArrayList<StudentItems> studentItems = students.getValue();
+            if (studentItems == null) return;
+            if (sid == -1) {
+                onError.onError(new IllegalStateException("roll " + roll + " " + name + " is already in the class"));
+                return;
+            }
+            ArrayList<StudentItems> changed = new ArrayList<>(studentItems);
+            changed.add(new StudentItems(sid, roll, name));
+            students.setValue(changed);
+        }, onError);
+    }
+
+    void editStudent(int position, String roll, String name, final AttendanceRepository.ErrorCallback onError) {
+        ArrayList<StudentItems> studentItems = students.getValue();
+        if (studentItems == null) return;
+        final StudentItems studentItem = studentItems.get(position);
+        int rollNumber = Integer.parseInt(roll);
+        StudentItems edited = new StudentItems(studentItem.getSid(), roll, name).withStatus(studentItem.getStatus());
+        ArrayList<StudentItems> changed = new ArrayList<>(studentItems);
+        changed.set(position, edited);
+        students.setValue(changed);
+        repository.editStudent(studentItem.getSid(), rollNumber, name, e -> {
+            restore(studentItem, -1);
+            onError.onError(e);
+        });
+    }
+
+    void removeStudent(final int position, final AttendanceRepository.ErrorCallback onError) {
+        ArrayList<StudentItems> studentItems = students.getValue();
+        if (studentItems == null) return;
+        ArrayList<StudentItems> changed = new ArrayList<>(studentItems);
+        final StudentItems studentItem = changed.remove(position);
+        students.setValue(changed);
+        repository.removeStudent(studentItem.getSid(), e -> {
+            restore(studentItem, position);
+            onError.onError(e);
+        });
+    }
+
+    //puts item back in place of the one with its _SID keeping the mark taken since, or at position when it was removed
+    private void restore(StudentItems item, int position) {
+        ArrayList<StudentItems> studentItems = students.getValue();
+        if (studentItems == null) return;
+        ArrayList<StudentItems> changed = new ArrayList<>(studentItems);
+        for (int i = 0; i < changed.size(); i++) {
+            if (changed.get(i).getSid() == item.getSid()) {
+                changed.set(i, item.withStatus(changed.get(i).getStatus()));
+                students.setValue(changed);
+                return;
+            }
+        }
+        if (position < 0) return;
+        changed.add(Math.min(position, changed.size()), item);
+        students.setValue(changed);
+    }
+}
@@ -0,0 +1,120 @@
+package com.inan.cmhs.attendance;
+
+import android.util.Log;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.utils.PdfMerger;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+//Every class in Class_Table in one PDF. Each class is written to its own part file on a pool of workers,
+//the parts are merged in class order with PdfMerger as soon as each one is ready. It runs on ExportJob's threads,
+//the calling thread does the merging while the workers render, so no repository thread waits on it.
+public class TermReport {
+    private final DBHelper dbHelper;
+    private final File partDir;
+    private final int workers;
+    private final ExportProfile profile;
+
+    //parts are written to partDir and deleted once merged, profile applies to the merged file
+    TermReport(DBHelper dbHelper, File partDir, int workers, ExportProfile profile) {
+        this.dbHelper = dbHelper;
+        this.partDir = partDir;
+        this.workers = workers;
+        this.profile = profile;
+    }
+
+    static int defaultWorkers() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    //rows progress will count up to for these months
+    int countRows(long[] months) {
+        long rows = 0;
+        for (ClassItems classItem : dbHelper.getClasses()) rows += dbHelper.countStudents(classItem.getId());
+        return (int) (rows * months.length);
+    }
+
+    //writes the months (first days as epoch days) of every class to out and closes it, returns the number of classes.
+    //progress is called from the worker threads
+    public int write(long[] months, OutputStream out, AttendanceReport.Progress progress) throws Exception {
+        ArrayList<ClassItems> classes = dbHelper.getClasses();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<File>> parts = new ArrayList<>(classes.size());
+        try {
+            for (final ClassItems classItem : classes) {
+                parts.add(pool.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        File part = File.createTempFile("term-" + classItem.getId() + "-", ".pdf", partDir);
+                        AttendanceReport report = new AttendanceReport(dbHelper);
+                        report.setProgress(progress);
+                        //parts only live until the merge
+                        report.setProfile(ExportProfile.FAST_DRAFT);
+                        try {
+                            report.writeMonths(classItem.getId(), months, new BufferedOutputStream(new FileOutputStream(part)));
+                        } catch (Exception e) {
+                            part.delete();
+                            throw e;
+                        }
+                        return part;
+                    }
+                }));
+            }
+            PdfDocument merged = new PdfDocument(new PdfWriter(out, profile.writerProperties()));
+            try {
+                PdfMerger merger = new PdfMerger(merged);
+                for (int i = 0; i < parts.size(); i++) {
+                    File part = get(parts.get(i), classes.get(i));
+                    PdfDocument partDocument = new PdfDocument(new PdfReader(part));
+                    merger.merge(partDocument, 1, partDocument.getNumberOfPages());
+                    partDocument.close();
+                    part.delete();
+                }
+            } finally {
+                merged.close();
+            }
+            return classes.size();
+        } finally {
+            //after a failure or cancel, drop the queued classes and let the running ones stop at their next flush
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            //parts that were written but not merged, a class that failed left none and was reported by get
+            for (Future<File> future : parts) {
+                if (!future.isDone()) continue;
+                try {
+                    future.get().delete();
+                } catch (ExecutionException e) {
+                    Log.w("TermReport", "class part failed after the export had stopped", e.getCause());
+                }
+            }
+        }
+    }
+
+    //classes are merged in order, so the first failure seen here is the first failing class
+    private static File get(Future<File> future, ClassItems classItem) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            //a cancel isn't the class's fault
+            if (cause instanceof CancellationException) throw (CancellationException) cause;
+            throw new IOException("can't write " + classItem.getName() + " " + classItem.getSection(), cause);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.inan.cmhs.attendance;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EpochDaysTest {
+    @Test
+    public void of_matchesKnownDates() {
+        assertEquals(0, EpochDays.of(1970, 1, 1));
+        assertEquals(19421, EpochDays.of(2023, 3, 5));
+        assertEquals(-1, EpochDays.of(1969, 12, 31));
+    }
+
+    @Test
+    public void roundTripsThroughLeapYears() {
+        for (long day = EpochDays.of(1999, 1, 1); day < EpochDays.of(2041, 1, 1); day++) {
+            assertEquals(day, EpochDays.of(EpochDays.year(day), EpochDays.month(day), EpochDays.dayOfMonth(day)));
+        }
+        assertEquals(29, EpochDays.dayOfMonth(EpochDays.of(2024, 3, 1) - 1));
+    }
+
+    @Test
+    public void nextMonth_wrapsTheYear() {
+        assertEquals(EpochDays.of(2024, 1, 1), EpochDays.nextMonth(EpochDays.of(2023, 12, 17)));
+        assertEquals(EpochDays.of(2023, 3, 1), EpochDays.nextMonth(EpochDays.of(2023, 2, 28)));
+    }
+
+    @Test
+    public void parse_readsLegacyDates() {
+        assertEquals(EpochDays.of(2023, 3, 5), EpochDays.parse("05.03.2023"));
+        assertEquals(-1, EpochDays.parse("5.3.2023"));
+        assertEquals(-1, EpochDays.parse("32.01.2023"));
+    }
+}